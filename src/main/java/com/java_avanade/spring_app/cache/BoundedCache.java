@@ -0,0 +1,57 @@
+package com.java_avanade.spring_app.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache em memória com tamanho máximo (política LRU) e expiração por entrada.
+ * Thread-safe; as seções críticas são curtas o bastante para o caminho de cada requisição.
+ */
+public class BoundedCache<K, V> {
+
+    private final Map<K, Entry<V>> entries;
+
+    public BoundedCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Tamanho máximo do cache deve ser positivo: " + maxSize);
+        }
+        // accessOrder = true para que a entrada mais antiga seja a menos usada recentemente
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public synchronized void put(K key, V value, long expiresAtMillis) {
+        entries.put(key, new Entry<>(value, expiresAtMillis));
+    }
+
+    public synchronized void invalidate(K key) {
+        entries.remove(key);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+}
@@ -0,0 +1,225 @@
+package com.java_avanade.spring_app.cache;
+
+import com.java_avanade.spring_app.dtos.ProductDTO;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Cache read-through dos produtos do catálogo (ProductDTO com estoque agregado) por productCode.
+ *
+ * Uma entrada é servida normalmente até fresh-ms; depois disso, até stale-ms, ainda é servida
+ * enquanto uma única atualização por produto roda em segundo plano (stale-while-revalidate),
+ * de modo que lentidão no banco não chega à página de detalhe. Alterações de produto e estoque
+ * invalidam a entrada imediatamente e de novo após o commit.
+ *
+ * Cada invalidação incrementa a geração do produto; uma carga iniciada antes dela não grava o
+ * resultado, evitando que uma leitura concorrente devolva ao cache um valor já invalidado.
+ * Os DTOs são compartilhados entre requisições e não devem ser alterados por quem os recebe.
+ */
+@Component
+public class ProductCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductCache.class);
+
+    private static final int GENERATION_SLOTS = 4096;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private final BoundedCache<Long, CachedProduct> entries;
+    private final long freshMs;
+    private final long staleMs;
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATION_SLOTS);
+    private final Set<Long> refreshing = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refreshExecutor;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter staleHits;
+
+    private record CachedProduct(ProductDTO product, long freshUntil) {
+    }
+
+    public ProductCache(@Value("${product.cache.max-size:10000}") int maxSize,
+                        @Value("${product.cache.fresh-ms:30000}") long freshMs,
+                        @Value("${product.cache.stale-ms:300000}") long staleMs,
+                        @Value("${product.cache.refresh-threads:2}") int refreshThreads,
+                        MeterRegistry meterRegistry) {
+        this.entries = new BoundedCache<>(maxSize);
+        this.freshMs = freshMs;
+        this.staleMs = Math.max(staleMs, freshMs);
+
+        AtomicInteger counter = new AtomicInteger();
+        // Atualizações em segundo plano são descartáveis: com a fila cheia, a próxima leitura tenta de novo
+        this.refreshExecutor = new ThreadPoolExecutor(
+                refreshThreads, refreshThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(256),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "product-cache-refresh-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.hits = Counter.builder("product.cache.requests").tag("result", "hit")
+                .description("Leituras de produto atendidas pelo cache").register(meterRegistry);
+        this.misses = Counter.builder("product.cache.requests").tag("result", "miss")
+                .description("Leituras de produto carregadas do banco").register(meterRegistry);
+        this.staleHits = Counter.builder("product.cache.requests").tag("result", "stale")
+                .description("Leituras de produto servidas vencidas enquanto o cache é atualizado").register(meterRegistry);
+        Gauge.builder("product.cache.size", entries, BoundedCache::size)
+                .description("Produtos em cache").register(meterRegistry);
+
+        logger.info("Cache de produtos inicializado com tamanho máximo {}, fresh {} ms e stale {} ms",
+                maxSize, freshMs, this.staleMs);
+    }
+
+    public Optional<ProductDTO> get(Long productCode) {
+        ProductDTO cached = lookup(productCode);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        misses.increment();
+        long generation = generation(productCode);
+        Optional<ProductDTO> loaded = productRepository.findCatalogById(productCode);
+        loaded.ifPresent(product -> store(productCode, product, generation));
+        return loaded;
+    }
+
+    // Leitura em lote: apenas os produtos ausentes do cache são carregados, em uma única consulta
+    public Map<Long, ProductDTO> getAll(Collection<Long> productCodes) {
+        Map<Long, ProductDTO> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long productCode : productCodes) {
+            ProductDTO cached = lookup(productCode);
+            if (cached != null) {
+                result.put(productCode, cached);
+            } else {
+                missing.add(productCode);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            misses.increment(missing.size());
+            Map<Long, Long> loadGenerations = new HashMap<>();
+            missing.forEach(productCode -> loadGenerations.put(productCode, generation(productCode)));
+            for (ProductDTO product : productRepository.findCatalogByIds(missing)) {
+                store(product.getProductCode(), product, loadGenerations.get(product.getProductCode()));
+                result.put(product.getProductCode(), product);
+            }
+        }
+        return result;
+    }
+
+    // Remove o produto agora e novamente após o commit da transação atual
+    public void invalidate(Long productCode) {
+        evict(productCode);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(productCode);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    private ProductDTO lookup(Long productCode) {
+        CachedProduct cached = entries.get(productCode);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.freshUntil() > System.currentTimeMillis()) {
+            hits.increment();
+        } else {
+            staleHits.increment();
+            refreshInBackground(productCode);
+        }
+        return cached.product();
+    }
+
+    // Uma única atualização em andamento por produto
+    private void refreshInBackground(Long productCode) {
+        if (!refreshing.add(productCode)) {
+            return;
+        }
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    long generation = generation(productCode);
+                    Optional<ProductDTO> loaded = productRepository.findCatalogById(productCode);
+                    if (loaded.isPresent()) {
+                        store(productCode, loaded.get(), generation);
+                    } else {
+                        evict(productCode);
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("Falha ao atualizar o produto {} no cache; a entrada vencida continua em uso", productCode, e);
+                } finally {
+                    refreshing.remove(productCode);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(productCode);
+            logger.debug("Fila de atualização do cache de produtos cheia; produto {} será atualizado depois", productCode);
+        }
+    }
+
+    private void store(Long productCode, ProductDTO product, long loadGeneration) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            // Uma invalidação ocorreu durante a carga: o valor lido pode estar desatualizado
+            if (generation(productCode) != loadGeneration) {
+                return;
+            }
+            entries.put(productCode, new CachedProduct(product, now + freshMs), now + staleMs);
+        }
+    }
+
+    private void evict(Long productCode) {
+        synchronized (entries) {
+            generations.incrementAndGet(slot(productCode));
+            entries.invalidate(productCode);
+        }
+    }
+
+    private long generation(Long productCode) {
+        return generations.get(slot(productCode));
+    }
+
+    private int slot(Long productCode) {
+        return Math.floorMod(productCode.hashCode(), GENERATION_SLOTS);
+    }
+}
@@ -5,6 +5,7 @@ import com.java_avanade.spring_app.models.Client;
 import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.models.Stock;
 import com.java_avanade.spring_app.models.User;
+import com.java_avanade.spring_app.models.UserIdentity;
 import com.java_avanade.spring_app.repositories.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,6 +37,7 @@ public class DataLoader {
             AffiliateRepository affiliateRepository,
             ProductRepository productRepository,
             StockRepository stockRepository,
+            UserIdentityRepository userIdentityRepository,
             PasswordEncoder passwordEncoder) {
 
         return new CommandLineRunner() {
@@ -62,6 +64,11 @@ public class DataLoader {
                     // Criando afiliado com referência ao admin
                     Affiliate affiliate = createAffiliateUser(affiliateRepository, passwordEncoder, admin);
 
+                    // Registrando as identidades usadas no login e no registro
+                    registerIdentity(userIdentityRepository, "ADMIN", admin.getId(), admin.getUsername(), admin.getEmail());
+                    registerIdentity(userIdentityRepository, "CLIENT", client.getId(), client.getUsername(), client.getEmail());
+                    registerIdentity(userIdentityRepository, "AFFILIATE", affiliate.getId(), affiliate.getUsername(), affiliate.getEmail());
+
                     // Criando produtos para o afiliado
                     createProducts(productRepository, stockRepository, affiliate);
 
@@ -136,6 +143,13 @@ public class DataLoader {
                 return savedAffiliate;
             }
 
+            private void registerIdentity(UserIdentityRepository userIdentityRepository,
+                                          String userType, Long entityId, String username, String email) {
+                if (userIdentityRepository.findByUserTypeAndEntityId(userType, entityId).isEmpty()) {
+                    userIdentityRepository.save(new UserIdentity(null, username, email, userType, entityId));
+                }
+            }
+
             private void createProducts(ProductRepository productRepository,
                                         StockRepository stockRepository,
                                         Affiliate affiliate) {
@@ -147,6 +161,7 @@ public class DataLoader {
                 product1.setProductType("INFANTIL");
                 product1.setProductChoice("TAMANHO_P");
                 product1.setAffiliate(affiliate);
+                product1.setAvailableStock(50);
                 product1.setImageUrl("https://example.com/fralda_p.jpg");
 
                 Product savedProduct1 = productRepository.save(product1);
@@ -165,6 +180,7 @@ public class DataLoader {
                 product2.setProductType("INFANTIL");
                 product2.setProductChoice("TAMANHO_M");
                 product2.setAffiliate(affiliate);
+                product2.setAvailableStock(40);
                 product2.setImageUrl("https://example.com/fralda_m.jpg");
 
                 Product savedProduct2 = productRepository.save(product2);
@@ -183,6 +199,7 @@ public class DataLoader {
                 product3.setProductType("INFANTIL");
                 product3.setProductChoice("TAMANHO_G");
                 product3.setAffiliate(affiliate);
+                product3.setAvailableStock(30);
                 product3.setImageUrl("https://example.com/fralda_g.jpg");
 
                 Product savedProduct3 = productRepository.save(product3);
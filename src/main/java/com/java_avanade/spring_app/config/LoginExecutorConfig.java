@@ -0,0 +1,59 @@
+package com.java_avanade.spring_app.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executor dedicado à verificação de senhas (BCrypt) no login.
+ * Limita a CPU consumida por picos de login e recusa imediatamente o excedente,
+ * em vez de ocupar as threads do Tomcat que atendem catálogo e checkout.
+ */
+@Configuration
+public class LoginExecutorConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoginExecutorConfig.class);
+
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor loginExecutor(
+            @Value("${security.login-executor.threads:0}") int threads,
+            @Value("${security.login-executor.queue-capacity:64}") int queueCapacity,
+            MeterRegistry meterRegistry) {
+
+        // 0 significa uma thread por núcleo disponível
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "login-hash-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                threadFactory,
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("auth.login.executor.queue", executor, e -> e.getQueue().size())
+                .description("Logins aguardando verificação de senha")
+                .register(meterRegistry);
+        Gauge.builder("auth.login.executor.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Verificações de senha em andamento")
+                .register(meterRegistry);
+
+        logger.info("Executor de login inicializado com {} threads e fila de {} posições", poolSize, queueCapacity);
+        return executor;
+    }
+}
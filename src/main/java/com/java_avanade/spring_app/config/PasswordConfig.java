@@ -1,5 +1,8 @@
 package com.java_avanade.spring_app.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -11,8 +14,40 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 @Configuration
 public class PasswordConfig {
 
+    // Hashes gravados com custo menor são regravados com este custo no próximo login bem-sucedido
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${security.password.bcrypt-strength:10}") int bcryptStrength,
+                                           MeterRegistry meterRegistry) {
+        return new TimedPasswordEncoder(new BCryptPasswordEncoder(bcryptStrength), meterRegistry);
     }
-}
\ No newline at end of file
+
+    // Mede apenas a verificação do hash (auth.login.hash), sem a busca do usuário no banco
+    static class TimedPasswordEncoder implements PasswordEncoder {
+
+        private final PasswordEncoder delegate;
+        private final MeterRegistry meterRegistry;
+
+        TimedPasswordEncoder(PasswordEncoder delegate, MeterRegistry meterRegistry) {
+            this.delegate = delegate;
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public String encode(CharSequence rawPassword) {
+            return delegate.encode(rawPassword);
+        }
+
+        @Override
+        public boolean matches(CharSequence rawPassword, String encodedPassword) {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            boolean matches = delegate.matches(rawPassword, encodedPassword);
+            sample.stop(meterRegistry.timer("auth.login.hash", "outcome", matches ? "success" : "failure"));
+            return matches;
+        }
+
+        @Override
+        public boolean upgradeEncoding(String encodedPassword) {
+            return delegate.upgradeEncoding(encodedPassword);
+        }
+    }
+}
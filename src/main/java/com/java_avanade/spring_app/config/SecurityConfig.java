@@ -59,7 +59,8 @@ public class SecurityConfig {
         AuthenticationManagerBuilder authenticationManagerBuilder = http.getSharedObject(AuthenticationManagerBuilder.class);
         authenticationManagerBuilder
                 .userDetailsService(customUserDetailsService)
-                .passwordEncoder(passwordEncoder);
+                .passwordEncoder(passwordEncoder)
+                .userDetailsPasswordManager(customUserDetailsService);
 
         logger.debug("AuthenticationManager configurado com CustomUserDetailsService");
         return authenticationManagerBuilder.build();
@@ -84,6 +85,9 @@ public class SecurityConfig {
             // Permitir acesso à documentação e endpoints de autenticação
             auth.requestMatchers("/auth/**", "/v3/api-docs/**", "/swagger-ui/**",
                     "/swagger-ui.html", "/swagger", "/api-docs", "/h2-console/**").permitAll();
+            // Health público; métricas do actuator apenas para administradores
+            auth.requestMatchers("/actuator/health").permitAll();
+            auth.requestMatchers("/actuator/**").hasRole("ADMIN");
             // Todos os outros endpoints requerem autenticação
             auth.anyRequest().authenticated();
         });
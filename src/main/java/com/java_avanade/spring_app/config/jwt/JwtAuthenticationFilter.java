@@ -1,6 +1,7 @@
 package com.java_avanade.spring_app.config.jwt;
 
 import com.java_avanade.spring_app.services.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -8,6 +9,7 @@ import jakarta.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -26,6 +28,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     private final JwtTokenProvider jwtTokenProvider;
     private final CustomUserDetailsService customUserDetailsService;
 
+    // No modo stateless o principal é montado a partir das claims assinadas, sem consultar o banco
+    @Value("${jwt.stateless:false}")
+    private boolean statelessMode;
+
     public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, CustomUserDetailsService customUserDetailsService) {
         this.jwtTokenProvider = jwtTokenProvider;
         this.customUserDetailsService = customUserDetailsService;
@@ -49,17 +55,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     logger.debug("Token JWT encontrado no header");
 
                     try {
-                        String username = jwtTokenProvider.extractUsername(jwt);
+                        // Token verificado uma única vez; as etapas seguintes reutilizam as mesmas claims
+                        Claims claims = jwtTokenProvider.extractAllClaims(jwt);
+                        String username = claims.getSubject();
                         logger.debug("Username extraído do token: {}", username);
 
                         // Validar token e configurar autenticação
                         if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
                             logger.debug("Token contém username e contexto de segurança está vazio");
 
-                            UserDetails userDetails = this.customUserDetailsService.loadUserByUsername(username);
-                            logger.debug("UserDetails carregado para username: {}", username);
+                            UserDetails userDetails = statelessMode
+                                    ? jwtTokenProvider.extractPrincipal(claims).orElse(null)
+                                    : null;
+
+                            if (userDetails != null) {
+                                logger.debug("Principal construído a partir das claims do token: {}", username);
+                            } else {
+                                userDetails = this.customUserDetailsService.loadUserByUsername(username);
+                                logger.debug("UserDetails carregado para username: {}", username);
+                            }
 
-                            if (jwtTokenProvider.validateToken(jwt, userDetails)) {
+                            if (jwtTokenProvider.validateToken(claims, userDetails)) {
                                 logger.debug("Token JWT válido para usuário: {}", username);
 
                                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
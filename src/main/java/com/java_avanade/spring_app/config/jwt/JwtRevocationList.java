@@ -0,0 +1,106 @@
+package com.java_avanade.spring_app.config.jwt;
+
+import com.java_avanade.spring_app.cache.BoundedCache;
+import com.java_avanade.spring_app.models.JwtRevocation;
+import com.java_avanade.spring_app.repositories.JwtRevocationRepository;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Date;
+
+/**
+ * Lista compacta de revogação: guarda, por username, o instante antes do qual todos os tokens
+ * emitidos deixam de valer (logout, troca de senha ou de papéis, exclusão do usuário).
+ * Os instantes são guardados em milissegundos: um token emitido logo após a revogação (por exemplo,
+ * o novo token devolvido na troca de senha) continua válido mesmo dentro do mesmo segundo.
+ * O instante fica na tabela jwt_revocations, gravado na transação da alteração, e vale para todas as
+ * instâncias da API. Cada nó lê a tabela por um cache local de TTL curto: uma revogação feita em outro
+ * nó passa a valer aqui em no máximo jwt.revocation.cache-ttl-ms; no nó que revogou, logo após o commit.
+ * Linhas mais antigas que a expiração do JWT são removidas periodicamente, pois esses tokens já expiraram.
+ */
+@Component
+public class JwtRevocationList {
+
+    private static final Logger logger = LoggerFactory.getLogger(JwtRevocationList.class);
+
+    // Marca no cache a ausência de revogação para o username, evitando consultar a tabela a cada requisição
+    private static final long NOT_REVOKED = Long.MIN_VALUE;
+
+    @Autowired
+    private JwtRevocationRepository jwtRevocationRepository;
+
+    @Value("${jwt.expiration:10800000}")
+    private long jwtExpirationInMs;
+
+    @Value("${jwt.revocation.cache-max-size:10000}")
+    private int cacheMaxSize;
+
+    @Value("${jwt.revocation.cache-ttl-ms:5000}")
+    private long cacheTtlMs;
+
+    // username -> instante de revogação lido da tabela (ou NOT_REVOKED)
+    private BoundedCache<String, Long> revokedBeforeCache;
+
+    @PostConstruct
+    public void initCache() {
+        revokedBeforeCache = new BoundedCache<>(cacheMaxSize);
+    }
+
+    // Grava na transação do chamador: a revogação só vale se a alteração que a motivou for confirmada
+    @Transactional
+    public void revokeAll(String username) {
+        long nowMillis = System.currentTimeMillis();
+        if (jwtRevocationRepository.advanceRevokedBefore(username, nowMillis) == 0
+                && !jwtRevocationRepository.existsById(username)) {
+            jwtRevocationRepository.save(new JwtRevocation(username, nowMillis));
+        }
+        logger.info("Tokens emitidos antes de {} revogados para o usuário {}", new Date(nowMillis), username);
+
+        revokedBeforeCache.invalidate(username);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                // Leituras concorrentes podem ter guardado o estado anterior ao commit
+                revokedBeforeCache.invalidate(username);
+            }
+        });
+    }
+
+    // issuedAt deve ter precisão de milissegundos (claim iatMs); tokens antigos usam o iat em segundos
+    public boolean isRevoked(String username, Date issuedAt) {
+        long cutoff = revokedBeforeMillis(username);
+        if (cutoff == NOT_REVOKED) {
+            return false;
+        }
+        // Sem data de emissão não é possível provar que o token é posterior à revogação
+        return issuedAt == null || issuedAt.getTime() < cutoff;
+    }
+
+    @Scheduled(fixedDelayString = "${jwt.revocation.prune-interval-ms:3600000}")
+    @Transactional
+    public void prune() {
+        long oldestRelevant = System.currentTimeMillis() - jwtExpirationInMs;
+        int removed = jwtRevocationRepository.deleteOlderThan(oldestRelevant);
+        if (removed > 0) {
+            logger.debug("{} revogações de JWT expiradas removidas", removed);
+        }
+    }
+
+    private long revokedBeforeMillis(String username) {
+        Long cached = revokedBeforeCache.get(username);
+        if (cached != null) {
+            return cached;
+        }
+        long cutoff = jwtRevocationRepository.findRevokedBeforeMillis(username).orElse(NOT_REVOKED);
+        revokedBeforeCache.put(username, cutoff, System.currentTimeMillis() + cacheTtlMs);
+        return cutoff;
+    }
+}
@@ -2,6 +2,7 @@ package com.java_avanade.spring_app.config.jwt;
 
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.SignatureAlgorithm;
@@ -13,33 +14,57 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 
+import com.java_avanade.spring_app.cache.BoundedCache;
+import com.java_avanade.spring_app.services.AuthenticatedPrincipal;
 import com.java_avanade.spring_app.services.CustomUserDetailsService;
+import com.java_avanade.spring_app.services.ResolvedPrincipal;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenProvider.class);
 
+    private static final String ISSUED_AT_MILLIS_CLAIM = "iatMs";
+
     private final Key key;
 
+    // Parser imutável e thread-safe, construído uma única vez
+    private final JwtParser jwtParser;
+
+    // Claims já verificadas, indexadas pelo digest do token e válidas até a expiração do próprio token
+    private final BoundedCache<String, Claims> verifiedClaimsCache;
+
     @Value("${jwt.expiration:10800000}")
     private long jwtExpirationInMs;
 
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
-    public JwtTokenProvider(@Value("${jwt.secret:}") String jwtSecret) {
+    @Autowired
+    private JwtRevocationList jwtRevocationList;
+
+    public JwtTokenProvider(@Value("${jwt.secret:}") String jwtSecret,
+                            @Value("${jwt.claims-cache.max-size:10000}") int claimsCacheMaxSize) {
         logger.debug("Inicializando JwtTokenProvider com expiração de {} ms", jwtExpirationInMs);
 
         // Cria uma chave segura a partir da string do segredo
@@ -53,6 +78,11 @@ public class JwtTokenProvider {
                     logger.warn("Nenhum segredo JWT configurado, gerando chave aleatória");
                     return Keys.secretKeyFor(SignatureAlgorithm.HS256);
                 });
+
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(key)
+                .build();
+        this.verifiedClaimsCache = new BoundedCache<>(claimsCacheMaxSize);
     }
 
     public String generateToken(Authentication authentication) {
@@ -65,12 +95,14 @@ public class JwtTokenProvider {
 
         // Obter informações adicionais para o token
         String username = userDetails.getUsername();
-        Long userId = customUserDetailsService.getRealUserIdByUsername(username);
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        ResolvedPrincipal principal = customUserDetailsService.resolvePrincipal(username);
 
+        // Papéis e adminId permitem autenticar no modo stateless sem consultar o banco
         Map<String, Object> claims = new HashMap<>();
-        claims.put("id", userId);
-        claims.put("type", userType);
+        claims.put("id", principal.getId());
+        claims.put("type", principal.getUserType());
+        claims.put("roles", new ArrayList<>(principal.getRoles()));
+        claims.put("adminId", principal.getAdminId());
 
         return createToken(claims, username);
     }
@@ -81,6 +113,9 @@ public class JwtTokenProvider {
 
         logger.debug("Criando token para subject: {} com expiração: {}", subject, expiryDate);
 
+        // O iat padrão do JWT tem precisão de segundos; a revogação compara em milissegundos
+        claims.put(ISSUED_AT_MILLIS_CLAIM, now.getTime());
+
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
@@ -134,19 +169,50 @@ public class JwtTokenProvider {
         }
     }
 
+    // Constrói o principal apenas a partir das claims assinadas; vazio se o token não trouxer todas as informações
+    public Optional<AuthenticatedPrincipal> extractPrincipal(String token) {
+        return extractPrincipal(extractAllClaims(token));
+    }
+
+    public Optional<AuthenticatedPrincipal> extractPrincipal(Claims claims) {
+        String userType = claims.get("type", String.class);
+        Long userId = claims.get("id", Long.class);
+
+        if (!(claims.get("roles") instanceof Collection<?> roles) || userType == null || userId == null) {
+            logger.debug("Token sem claims suficientes para autenticação stateless");
+            return Optional.empty();
+        }
+
+        List<GrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                .collect(Collectors.toList());
+
+        return Optional.of(new AuthenticatedPrincipal(claims.getSubject(), "", true, authorities,
+                userType, userId, claims.get("adminId", Long.class)));
+    }
+
     public <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
     }
 
-    private Claims extractAllClaims(String token) {
+    // Verifica a assinatura apenas na primeira vez que o token é visto; depois serve as claims do cache
+    public Claims extractAllClaims(String token) {
+        String cacheKey = digest(token);
+        Claims cachedClaims = verifiedClaimsCache.get(cacheKey);
+        if (cachedClaims != null) {
+            return cachedClaims;
+        }
+
         try {
-            Claims claims = Jwts.parserBuilder()
-                    .setSigningKey(key)
-                    .build()
-                    .parseClaimsJws(token)
-                    .getBody();
+            Claims claims = jwtParser.parseClaimsJws(token).getBody();
             logger.debug("Claims extraídos com sucesso do token");
+
+            // O cache nunca devolve um token além da sua expiração
+            Date expiration = claims.getExpiration();
+            if (expiration != null) {
+                verifiedClaimsCache.put(cacheKey, claims, expiration.getTime());
+            }
             return claims;
         } catch (Exception e) {
             // Usar pattern matching para identificar o tipo específico de exceção
@@ -163,9 +229,9 @@ public class JwtTokenProvider {
         }
     }
 
-    private Boolean isTokenExpired(String token) {
+    private Boolean isTokenExpired(Claims claims) {
         try {
-            boolean isExpired = extractExpiration(token).before(new Date());
+            boolean isExpired = claims.getExpiration().before(new Date());
             logger.debug("Verificação de expiração do token: {}", isExpired ? "expirado" : "válido");
             return isExpired;
         } catch (Exception e) {
@@ -176,8 +242,24 @@ public class JwtTokenProvider {
 
     public Boolean validateToken(String token, UserDetails userDetails) {
         try {
-            final String username = extractUsername(token);
-            boolean isValid = username.equals(userDetails.getUsername()) && !isTokenExpired(token);
+            return validateToken(extractAllClaims(token), userDetails);
+        } catch (Exception e) {
+            logger.error("Erro ao validar token JWT: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // Emissão em milissegundos; tokens gerados antes da claim iatMs usam o iat padrão (segundos)
+    private Date issuedAt(Claims claims) {
+        Long issuedAtMillis = claims.get(ISSUED_AT_MILLIS_CLAIM, Long.class);
+        return issuedAtMillis != null ? new Date(issuedAtMillis) : claims.getIssuedAt();
+    }
+
+    public Boolean validateToken(Claims claims, UserDetails userDetails) {
+        try {
+            final String username = claims.getSubject();
+            boolean isRevoked = jwtRevocationList.isRevoked(username, issuedAt(claims));
+            boolean isValid = username.equals(userDetails.getUsername()) && !isTokenExpired(claims) && !isRevoked;
 
             if (isValid) {
                 logger.debug("Token JWT válido para o usuário: {}", username);
@@ -185,6 +267,8 @@ public class JwtTokenProvider {
                 if (!username.equals(userDetails.getUsername())) {
                     logger.warn("Token JWT inválido: username do token ({}) não corresponde ao userDetails ({})",
                             username, userDetails.getUsername());
+                } else if (isRevoked) {
+                    logger.warn("Token JWT inválido: token revogado");
                 } else {
                     logger.warn("Token JWT inválido: token expirado");
                 }
@@ -196,4 +280,14 @@ public class JwtTokenProvider {
             return false;
         }
     }
-}
\ No newline at end of file
+
+    private String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 é obrigatório em toda JVM
+            throw new IllegalStateException("Algoritmo SHA-256 indisponível", e);
+        }
+    }
+}
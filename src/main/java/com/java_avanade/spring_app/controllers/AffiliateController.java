@@ -1,8 +1,9 @@
 package com.java_avanade.spring_app.controllers;
 
 import com.java_avanade.spring_app.dtos.AffiliateDTO;
+import com.java_avanade.spring_app.dtos.CursorPageDTO;
+import com.java_avanade.spring_app.dtos.ProductDTO;
 import com.java_avanade.spring_app.models.Affiliate;
-import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.services.AffiliateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -65,9 +66,13 @@ public class AffiliateController {
     }
 
     @GetMapping("/{id}/products")
-    @Operation(summary = "Listar produtos do afiliado", description = "Retorna uma lista de produtos de um afiliado específico")
-    public ResponseEntity<List<Product>> getAffiliateProducts(@PathVariable Long id) {
-        List<Product> products = affiliateService.getAffiliateProducts(id);
+    @Operation(summary = "Listar produtos do afiliado",
+            description = "Retorna uma página de produtos de um afiliado específico; use nextCursor para a próxima página")
+    public ResponseEntity<CursorPageDTO<ProductDTO>> getAffiliateProducts(
+            @PathVariable Long id,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer limit) {
+        CursorPageDTO<ProductDTO> products = affiliateService.getAffiliateProducts(id, cursor, limit);
         return ResponseEntity.ok(products);
     }
 }
\ No newline at end of file
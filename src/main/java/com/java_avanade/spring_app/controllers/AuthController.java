@@ -8,6 +8,7 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -35,4 +36,12 @@ public class AuthController {
         AuthDTO.RegisterResponse registerResponse = authService.registerUser(registerRequest);
         return ResponseEntity.ok(registerResponse);
     }
-}
\ No newline at end of file
+
+    @PostMapping("/logout")
+    @Operation(summary = "Encerrar sessão", description = "Revoga os tokens JWT já emitidos para o usuário autenticado")
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<Void> logout(Authentication authentication) {
+        authService.logout(authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+}
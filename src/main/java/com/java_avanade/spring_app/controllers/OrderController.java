@@ -1,10 +1,13 @@
 package com.java_avanade.spring_app.controllers;
 
+import com.java_avanade.spring_app.dtos.CheckoutDTO;
 import com.java_avanade.spring_app.dtos.OrderDTO;
+import com.java_avanade.spring_app.services.CheckoutService;
 import com.java_avanade.spring_app.services.OrderService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -21,6 +24,9 @@ public class OrderController {
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private CheckoutService checkoutService;
+
     @GetMapping
     @Operation(summary = "Listar todos os pedidos", description = "Retorna uma lista de todos os pedidos")
     @PreAuthorize("hasRole('ADMIN')")
@@ -61,6 +67,14 @@ public class OrderController {
         return ResponseEntity.ok(order);
     }
 
+    @PostMapping("/place")
+    @Operation(summary = "Fazer pedido completo", description = "Cria o pedido com todos os itens, debita o estoque e finaliza o checkout em uma única requisição")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENT') and @securityService.isOwnerOrAdmin(#placeOrderRequest.clientId, authentication)")
+    public ResponseEntity<CheckoutDTO> placeOrder(@Valid @RequestBody OrderDTO.PlaceOrderRequest placeOrderRequest) {
+        CheckoutDTO checkout = checkoutService.placeOrder(placeOrderRequest);
+        return ResponseEntity.ok(checkout);
+    }
+
     @PostMapping("/{orderId}/products")
     @Operation(summary = "Adicionar produto ao pedido", description = "Adiciona um produto ao pedido")
     @PreAuthorize("hasRole('ADMIN') or hasRole('CLIENT') and @securityService.isOrderOwner(#orderId, authentication)")
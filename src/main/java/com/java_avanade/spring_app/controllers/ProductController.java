@@ -1,17 +1,26 @@
 package com.java_avanade.spring_app.controllers;
 
+import com.java_avanade.spring_app.dtos.CursorPageDTO;
+import com.java_avanade.spring_app.dtos.FacetPageDTO;
 import com.java_avanade.spring_app.dtos.ProductDTO;
+import com.java_avanade.spring_app.dtos.ProductImportDTO;
+import com.java_avanade.spring_app.dtos.ProductLookupDTO;
+import com.java_avanade.spring_app.dtos.SuggestionDTO;
 import com.java_avanade.spring_app.models.Product;
+import com.java_avanade.spring_app.services.ProductImportService;
 import com.java_avanade.spring_app.services.ProductService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.List;
 
         @RestController
@@ -23,10 +32,25 @@ import java.util.List;
             @Autowired
             private ProductService productService;
 
+            @Autowired
+            private ProductImportService productImportService;
+
             @GetMapping
-            @Operation(summary = "Listar todos os produtos", description = "Retorna uma lista de todos os produtos")
-            public ResponseEntity<List<ProductDTO>> getAllProducts() {
-                List<ProductDTO> products = productService.getAllProducts();
+            @Operation(summary = "Listar todos os produtos",
+                    description = "Retorna uma página de produtos ordenada por price, name ou newest; use nextCursor para a próxima página")
+            public ResponseEntity<CursorPageDTO<ProductDTO>> getAllProducts(
+                    @RequestParam(defaultValue = "newest") String sort,
+                    @RequestParam(required = false) String cursor,
+                    @RequestParam(defaultValue = "20") Integer limit) {
+                CursorPageDTO<ProductDTO> products = productService.getAllProducts(sort, cursor, limit);
+                return ResponseEntity.ok(products);
+            }
+
+            @GetMapping(params = "ids")
+            @Operation(summary = "Obter vários produtos por ID",
+                    description = "Retorna os produtos na ordem dos IDs informados; found = false para IDs inexistentes")
+            public ResponseEntity<List<ProductLookupDTO>> getProductsByIds(@RequestParam List<Long> ids) {
+                List<ProductLookupDTO> products = productService.getProductsByIds(ids);
                 return ResponseEntity.ok(products);
             }
 
@@ -45,16 +69,51 @@ import java.util.List;
             }
 
             @GetMapping("/search")
-            @Operation(summary = "Pesquisar produtos", description = "Pesquisa produtos por palavra-chave")
-            public ResponseEntity<List<ProductDTO>> searchProducts(@RequestParam String keyword) {
-                List<ProductDTO> products = productService.searchProducts(keyword);
+            @Operation(summary = "Pesquisar produtos",
+                    description = "Pesquisa produtos por palavras-chave (todas obrigatórias, sem distinção de acentos), ordenados por relevance, price, name ou newest")
+            public ResponseEntity<CursorPageDTO<ProductDTO>> searchProducts(
+                    @RequestParam String keyword,
+                    @RequestParam(defaultValue = "relevance") String sort,
+                    @RequestParam(required = false) String cursor,
+                    @RequestParam(defaultValue = "20") Integer limit) {
+                CursorPageDTO<ProductDTO> products = productService.searchProducts(keyword, sort, cursor, limit);
+                return ResponseEntity.ok(products);
+            }
+
+            @GetMapping("/filter")
+            @Operation(summary = "Filtrar produtos com facetas",
+                    description = "Combina filtros por tipo, escolha, faixa de preço e disponibilidade e retorna a contagem de cada faceta")
+            public ResponseEntity<FacetPageDTO<ProductDTO>> filterProducts(
+                    @RequestParam(required = false) String type,
+                    @RequestParam(required = false) String choice,
+                    @RequestParam(required = false) BigDecimal minPrice,
+                    @RequestParam(required = false) BigDecimal maxPrice,
+                    @RequestParam(defaultValue = "false") boolean inStock,
+                    @RequestParam(required = false) String cursor,
+                    @RequestParam(defaultValue = "20") Integer limit) {
+                FacetPageDTO<ProductDTO> products = productService.filterProducts(
+                        type, choice, minPrice, maxPrice, inStock, cursor, limit);
                 return ResponseEntity.ok(products);
             }
 
+            @GetMapping("/suggest")
+            @Operation(summary = "Autocompletar produtos",
+                    description = "Retorna os nomes e tipos de produto que começam com o prefixo, ordenados por estoque disponível")
+            public ResponseEntity<List<SuggestionDTO>> suggestProducts(
+                    @RequestParam String prefix,
+                    @RequestParam(required = false) Integer limit) {
+                List<SuggestionDTO> suggestions = productService.suggestProducts(prefix, limit);
+                return ResponseEntity.ok(suggestions);
+            }
+
             @GetMapping("/type/{productType}")
             @Operation(summary = "Listar produtos por tipo", description = "Retorna uma lista de produtos de um tipo específico")
-            public ResponseEntity<List<ProductDTO>> getProductsByType(@PathVariable String productType) {
-                List<ProductDTO> products = productService.getProductsByType(productType);
+            public ResponseEntity<CursorPageDTO<ProductDTO>> getProductsByType(
+                    @PathVariable String productType,
+                    @RequestParam(defaultValue = "newest") String sort,
+                    @RequestParam(required = false) String cursor,
+                    @RequestParam(defaultValue = "20") Integer limit) {
+                CursorPageDTO<ProductDTO> products = productService.getProductsByType(productType, sort, cursor, limit);
                 return ResponseEntity.ok(products);
             }
 
@@ -69,6 +128,18 @@ import java.util.List;
         return ResponseEntity.ok(createdProduct);
     }
 
+    @PostMapping(value = "/import", consumes = {ProductImportService.CONTENT_TYPE_CSV, ProductImportService.CONTENT_TYPE_NDJSON})
+    @Operation(summary = "Importar produtos em lote",
+            description = "Importa produtos de um afiliado a partir de CSV (com cabeçalho) ou NDJSON, reportando erros por linha")
+    @PreAuthorize("hasRole('ADMIN') or hasRole('AFFILIATE') and @securityService.isOwnerOrAdmin(#affiliateId, authentication)")
+    public ResponseEntity<ProductImportDTO.Result> importProducts(
+            @RequestParam Long affiliateId,
+            HttpServletRequest request) throws IOException {
+        ProductImportDTO.Result result = productImportService.importProducts(
+                affiliateId, request.getInputStream(), request.getContentType());
+        return ResponseEntity.ok(result);
+    }
+
     @PutMapping("/{id}")
     @Operation(summary = "Atualizar produto", description = "Atualiza os dados de um produto existente")
     @PreAuthorize("hasRole('ADMIN') or hasRole('AFFILIATE') and @securityService.isProductOwner(#id, authentication)")
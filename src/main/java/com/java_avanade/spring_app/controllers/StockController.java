@@ -1,6 +1,7 @@
 package com.java_avanade.spring_app.controllers;
 
 import com.java_avanade.spring_app.dtos.StockDTO;
+import com.java_avanade.spring_app.dtos.StockQuantityDTO;
 import com.java_avanade.spring_app.services.StockService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
@@ -44,6 +45,14 @@ public class StockController {
         return ResponseEntity.ok(stocks);
     }
 
+    @GetMapping("/quantities")
+    @Operation(summary = "Obter quantidades de vários produtos",
+            description = "Retorna a quantidade total em estoque de cada produto, na ordem pedida; found = false para IDs inexistentes")
+    public ResponseEntity<List<StockQuantityDTO>> getTotalStockQuantities(@RequestParam List<Long> productIds) {
+        List<StockQuantityDTO> quantities = stockService.getTotalStockQuantitiesByProductIds(productIds);
+        return ResponseEntity.ok(quantities);
+    }
+
     @GetMapping("/product/{productId}/quantity")
     @Operation(summary = "Obter quantidade total em estoque", description = "Retorna a quantidade total em estoque de um produto")
     public ResponseEntity<Integer> getTotalStockQuantity(@PathVariable Long productId) {
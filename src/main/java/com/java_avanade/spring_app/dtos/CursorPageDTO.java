@@ -0,0 +1,20 @@
+package com.java_avanade.spring_app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Página de resultados com paginação por cursor (keyset).
+ * nextCursor é opaco e deve ser enviado de volta para obter a próxima página; null indica a última página.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+}
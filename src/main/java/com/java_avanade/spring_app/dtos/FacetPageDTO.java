@@ -0,0 +1,21 @@
+package com.java_avanade.spring_app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FacetPageDTO<T> {
+    private List<T> items;
+    private String nextCursor;
+    private boolean hasMore;
+    // Total de produtos que atendem aos filtros
+    private int total;
+    // Faceta -> (valor -> quantidade de produtos), considerando os demais filtros aplicados
+    private Map<String, Map<String, Integer>> facets;
+}
@@ -1,5 +1,11 @@
 package com.java_avanade.spring_app.dtos;
 
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -20,4 +26,35 @@ public class OrderDTO {
     private String status;
     private BigDecimal totalAmount;
     private Boolean hasCheckout;
+
+    // Para a criação do pedido completo (itens, pagamento e entrega) em uma única requisição
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PlaceOrderRequest {
+        @NotNull(message = "Cliente é obrigatório")
+        private Long clientId;
+
+        @NotEmpty(message = "O pedido deve ter ao menos um item")
+        @Size(max = 100, message = "Máximo de 100 itens por pedido")
+        private List<@Valid PlaceOrderItem> items;
+
+        @NotBlank(message = "Forma de pagamento não pode estar em branco")
+        private String paymentType;
+
+        @NotBlank(message = "Endereço de entrega não pode estar em branco")
+        private String shippingAddress;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class PlaceOrderItem {
+        @NotNull(message = "Produto é obrigatório")
+        private Long productId;
+
+        @NotNull(message = "Quantidade é obrigatória")
+        @Min(value = 1, message = "Quantidade deve ser maior que zero")
+        private Integer quantity;
+    }
 }
\ No newline at end of file
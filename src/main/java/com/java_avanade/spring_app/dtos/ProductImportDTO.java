@@ -0,0 +1,73 @@
+package com.java_avanade.spring_app.dtos;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Classe que contém os DTOs da importação de produtos em lote (CSV ou NDJSON)
+ */
+public class ProductImportDTO {
+
+    /**
+     * Uma linha do arquivo de importação
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Row {
+        @NotBlank(message = "Nome não pode estar em branco")
+        private String name;
+
+        @NotBlank(message = "Descrição não pode estar em branco")
+        private String description;
+
+        @NotNull(message = "Preço é obrigatório")
+        @DecimalMin(value = "0.00", message = "Preço não pode ser negativo")
+        private BigDecimal price;
+
+        @NotBlank(message = "Tipo do produto não pode estar em branco")
+        private String productType;
+
+        @NotBlank(message = "Escolha do produto não pode estar em branco")
+        private String productChoice;
+
+        private String imageUrl;
+
+        @Min(value = 0, message = "Estoque inicial não pode ser negativo")
+        private Integer initialStock;
+    }
+
+    /**
+     * Erro de uma linha específica (numeração a partir de 1, incluindo o cabeçalho do CSV)
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class RowError {
+        private long line;
+        private String message;
+    }
+
+    /**
+     * Resumo da importação
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Result {
+        private long processed;
+        private long imported;
+        private long failed;
+        // Limitado a product.import.max-reported-errors; failed traz o total
+        private List<RowError> errors = new ArrayList<>();
+    }
+}
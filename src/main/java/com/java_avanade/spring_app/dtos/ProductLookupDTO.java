@@ -0,0 +1,15 @@
+package com.java_avanade.spring_app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductLookupDTO {
+    private Long productCode;
+    // false quando o produto não existe; product vem nulo
+    private boolean found;
+    private ProductDTO product;
+}
@@ -0,0 +1,20 @@
+package com.java_avanade.spring_app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockQuantityDTO {
+    private Long productId;
+    // false quando o produto não existe; quantity vem nulo
+    private boolean found;
+    private Integer quantity;
+
+    // Usado pela projeção JPQL: apenas produtos existentes são retornados pela consulta
+    public StockQuantityDTO(Long productId, Integer quantity) {
+        this(productId, true, quantity);
+    }
+}
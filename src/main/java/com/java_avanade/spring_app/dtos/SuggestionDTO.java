@@ -0,0 +1,15 @@
+package com.java_avanade.spring_app.dtos;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDTO {
+    private String text;
+    // NAME (nome de produto) ou TYPE (tipo de produto)
+    private String kind;
+    private Integer availableStock;
+}
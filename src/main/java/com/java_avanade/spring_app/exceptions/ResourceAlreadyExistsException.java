@@ -12,6 +12,10 @@ public class ResourceAlreadyExistsException extends RuntimeException {
         super(message);
     }
 
+    public ResourceAlreadyExistsException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
     public ResourceAlreadyExistsException(String resourceName, String fieldName, Object fieldValue) {
         super(String.format("%s já existe com %s: '%s'", resourceName, fieldName, fieldValue));
     }
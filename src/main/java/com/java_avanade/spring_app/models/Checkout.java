@@ -12,18 +12,26 @@ import java.time.LocalDateTime;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "checkouts")
+// Plano de leitura do CheckoutDTO: pedido e cliente na mesma consulta do checkout
+@NamedEntityGraph(name = Checkout.VIEW_GRAPH,
+        attributeNodes = @NamedAttributeNode(value = "order", subgraph = "order"),
+        subgraphs = @NamedSubgraph(name = "order", attributeNodes = @NamedAttributeNode("client")))
+@Table(name = "checkouts", indexes = {
+        @Index(name = "idx_checkouts_product_id", columnList = "product_id")
+})
 public class Checkout {
 
+    public static final String VIEW_GRAPH = "Checkout.view";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id")
     private Order order;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id")
     private Product product;
 
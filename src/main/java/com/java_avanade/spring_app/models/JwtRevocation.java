@@ -0,0 +1,26 @@
+package com.java_avanade.spring_app.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Instante de revogação dos tokens de um usuário, compartilhado por todas as instâncias da API:
+ * tokens emitidos antes de revokedBeforeMillis deixam de valer.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "jwt_revocations", indexes = {
+        @Index(name = "idx_jwt_revocations_revoked_before", columnList = "revoked_before_ms")
+})
+public class JwtRevocation {
+
+    @Id
+    private String username;
+
+    @Column(name = "revoked_before_ms", nullable = false)
+    private Long revokedBeforeMillis;
+}
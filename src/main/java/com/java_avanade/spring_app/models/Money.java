@@ -0,0 +1,61 @@
+package com.java_avanade.spring_app.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Valor monetário imutável em centavos (ponto fixo, duas casas decimais).
+ *
+ * Os cálculos de totais de pedido são feitos em long, sem alocar BigDecimal a cada operação;
+ * a conversão de e para BigDecimal acontece apenas na borda (entidades e DTOs). Operações que
+ * estourariam o long lançam ArithmeticException em vez de perder o valor silenciosamente.
+ */
+public record Money(long cents) implements Comparable<Money> {
+
+    public static final Money ZERO = new Money(0L);
+
+    private static final int SCALE = 2;
+
+    // Valores com mais de duas casas são arredondados para o centavo mais próximo
+    public static Money of(BigDecimal amount) {
+        return new Money(amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact());
+    }
+
+    public static Money lineTotal(BigDecimal unitPrice, int quantity) {
+        return of(unitPrice).times(quantity);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(cents, other.cents));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(cents, other.cents));
+    }
+
+    public Money times(long quantity) {
+        return new Money(Math.multiplyExact(cents, quantity));
+    }
+
+    public Money negate() {
+        return new Money(Math.negateExact(cents));
+    }
+
+    public boolean isZero() {
+        return cents == 0L;
+    }
+
+    public BigDecimal toBigDecimal() {
+        return BigDecimal.valueOf(cents, SCALE);
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(cents, other.cents);
+    }
+
+    @Override
+    public String toString() {
+        return toBigDecimal().toPlainString();
+    }
+}
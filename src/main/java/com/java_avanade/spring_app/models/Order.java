@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -14,22 +15,34 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "orders")
+// Plano de leitura do OrderDTO: cliente e itens na mesma consulta do pedido. Resumo, detalhe e
+// listagem do afiliado devolvem o mesmo OrderDTO completo, por isso um único plano atende todos
+@NamedEntityGraph(name = Order.VIEW_GRAPH, attributeNodes = {
+        @NamedAttributeNode("client"),
+        @NamedAttributeNode("cartItems")
+})
+// Atualiza apenas as colunas alteradas: mudar o status nunca sobrescreve total_amount com um valor lido antes
+@DynamicUpdate
+@Table(name = "orders", indexes = {
+        @Index(name = "idx_orders_client_id", columnList = "client_id")
+})
 public class Order {
 
+    public static final String VIEW_GRAPH = "Order.view";
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long orderId;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "client_id")
     private Client client;
 
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Cart> cartItems = new ArrayList<>();
 
-    @OneToOne(mappedBy = "order", cascade = CascadeType.ALL)
-    private Checkout checkout;
+    // O checkout referencia o pedido por checkouts.order_id e é consultado pelo CheckoutRepository:
+    // o lado inverso do um-para-um não pode ser carregado sob demanda e geraria um SELECT extra por pedido
 
     @Column(nullable = false)
     private LocalDateTime orderDate;
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -13,11 +14,21 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "products")
+// Atualiza apenas as colunas alteradas: salvar o cadastro nunca sobrescreve available_stock com um valor lido antes
+@DynamicUpdate
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_affiliate_id", columnList = "affiliate_id"),
+        @Index(name = "idx_products_affiliate_code", columnList = "affiliate_id, product_code"),
+        @Index(name = "idx_products_price_code", columnList = "price, product_code"),
+        @Index(name = "idx_products_name_code", columnList = "name, product_code"),
+        @Index(name = "idx_products_type_code", columnList = "product_type, product_code")
+})
 public class Product {
 
+    // Sequência com alocação em blocos: permite batch de INSERTs (IDENTITY obriga um INSERT por vez)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "products_seq")
+    @SequenceGenerator(name = "products_seq", sequenceName = "products_seq", allocationSize = 50)
     private Long productCode;
 
     @Column(nullable = false)
@@ -35,7 +46,7 @@ public class Product {
     @Column(nullable = false)
     private String productChoice;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "affiliate_id")
     private Affiliate affiliate;
 
@@ -43,4 +54,8 @@ public class Product {
     private List<Stock> stocks = new ArrayList<>();
 
     private String imageUrl;
+
+    // Soma das quantidades em stocks, mantida pelo StockService na mesma transação de cada alteração
+    @Column(nullable = false)
+    private Integer availableStock = 0;
 }
\ No newline at end of file
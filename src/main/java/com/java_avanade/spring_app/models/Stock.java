@@ -9,11 +9,15 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "stocks")
+// Um único registro de estoque por produto: os débitos condicionais atuam sempre sobre essa linha
+@Table(name = "stocks", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_stocks_product_id", columnNames = "product_id")
+})
 public class Stock {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stocks_seq")
+    @SequenceGenerator(name = "stocks_seq", sequenceName = "stocks_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne
@@ -0,0 +1,43 @@
+package com.java_avanade.spring_app.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Reserva temporária de estoque para um item de carrinho.
+ * A quantidade já foi debitada do estoque; se a reserva expirar antes do checkout,
+ * o sweeper devolve a quantidade ao estoque e remove a reserva.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "stock_holds", indexes = {
+        @Index(name = "idx_stock_holds_expires_at", columnList = "expires_at"),
+        @Index(name = "idx_stock_holds_order_id", columnList = "order_id")
+})
+public class StockHold {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "cart_item_id", nullable = false, unique = true)
+    private Long cartItemId;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(nullable = false)
+    private Integer quantity;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,36 @@
+package com.java_avanade.spring_app.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Registro unificado de identidades: mapeia username e email para o tipo de usuário
+ * (ADMIN, CLIENT ou AFFILIATE) e o ID da entidade correspondente.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "user_identities", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_identities_type_entity", columnNames = {"user_type", "entity_id"})
+})
+public class UserIdentity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(unique = true)
+    private String username;
+
+    @Column(nullable = false, unique = true)
+    private String email;
+
+    @Column(name = "user_type", nullable = false)
+    private String userType;
+
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+}
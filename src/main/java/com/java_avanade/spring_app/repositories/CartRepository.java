@@ -2,10 +2,12 @@ package com.java_avanade.spring_app.repositories;
 
 import com.java_avanade.spring_app.models.Cart;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Repository
@@ -16,6 +18,15 @@ public interface CartRepository extends JpaRepository<Cart, Long> {
     @Query("SELECT c FROM Cart c WHERE c.order.client.id = :clientId")
     List<Cart> findCartItemsByClientId(@Param("clientId") Long clientId);
 
+    @Modifying
     @Query("DELETE FROM Cart c WHERE c.order.orderId = :orderId")
     void deleteByOrderId(@Param("orderId") Long orderId);
+
+    // Soma dos itens pelo preço gravado em cada linha; null quando o pedido não tem itens
+    @Query("SELECT SUM(c.unitPrice * c.quantity) FROM Cart c WHERE c.order.orderId = :orderId")
+    BigDecimal sumLineTotalsByOrderId(@Param("orderId") Long orderId);
+
+    boolean existsByIdAndOrder_Client_Id(Long id, Long clientId);
+
+    boolean existsByOrder_OrderIdAndProduct_Affiliate_Id(Long orderId, Long affiliateId);
 }
\ No newline at end of file
@@ -1,22 +1,56 @@
 package com.java_avanade.spring_app.repositories;
 
 import com.java_avanade.spring_app.models.Checkout;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 @Repository
 public interface CheckoutRepository extends JpaRepository<Checkout, Long> {
+    // Consultas que alimentam o CheckoutDTO carregam pedido e cliente junto com o checkout
+    @Override
+    @EntityGraph(Checkout.VIEW_GRAPH)
+    List<Checkout> findAll();
+
+    @Override
+    @EntityGraph(Checkout.VIEW_GRAPH)
+    Optional<Checkout> findById(Long id);
+
+    @EntityGraph(Checkout.VIEW_GRAPH)
     @Query("SELECT c FROM Checkout c WHERE c.order.orderId = :orderId")
     Optional<Checkout> findByOrderId(@Param("orderId") Long orderId);
 
+    @EntityGraph(Checkout.VIEW_GRAPH)
     @Query("SELECT c FROM Checkout c WHERE c.order.client.id = :clientId")
     List<Checkout> findCheckoutsByClientId(@Param("clientId") Long clientId);
 
+    @EntityGraph(Checkout.VIEW_GRAPH)
     @Query("SELECT c FROM Checkout c WHERE c.product.affiliate.id = :affiliateId")
     List<Checkout> findCheckoutsByAffiliateId(@Param("affiliateId") Long affiliateId);
+
+    boolean existsByOrder_OrderId(Long orderId);
+
+    // Pedidos da lista que já possuem checkout, em uma única consulta
+    @Query("SELECT c.order.orderId FROM Checkout c WHERE c.order.orderId IN :orderIds")
+    Set<Long> findOrderIdsWithCheckout(@Param("orderIds") Collection<Long> orderIds);
+
+    @Modifying
+    @Query("DELETE FROM Checkout c WHERE c.order.orderId = :orderId")
+    void deleteByOrderId(@Param("orderId") Long orderId);
+
+    boolean existsByIdAndOrder_Client_Id(Long id, Long clientId);
+
+    // Produto do próprio checkout ou qualquer item do pedido associado pertence ao afiliado
+    @Query("SELECT CASE WHEN COUNT(c) > 0 THEN true ELSE false END FROM Checkout c LEFT JOIN c.product p " +
+            "WHERE c.id = :checkoutId AND (p.affiliate.id = :affiliateId OR EXISTS (" +
+            "SELECT ci.id FROM Cart ci WHERE ci.order = c.order AND ci.product.affiliate.id = :affiliateId))")
+    boolean existsAffiliateProductInCheckout(@Param("checkoutId") Long checkoutId, @Param("affiliateId") Long affiliateId);
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package com.java_avanade.spring_app.repositories;
+
+import com.java_avanade.spring_app.models.JwtRevocation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface JwtRevocationRepository extends JpaRepository<JwtRevocation, String> {
+    @Query("SELECT r.revokedBeforeMillis FROM JwtRevocation r WHERE r.username = :username")
+    Optional<Long> findRevokedBeforeMillis(@Param("username") String username);
+
+    // Só avança o instante: uma revogação concorrente mais recente nunca é sobrescrita por uma mais antiga
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE JwtRevocation r SET r.revokedBeforeMillis = :cutoff " +
+            "WHERE r.username = :username AND r.revokedBeforeMillis < :cutoff")
+    int advanceRevokedBefore(@Param("username") String username, @Param("cutoff") long cutoff);
+
+    @Modifying
+    @Query("DELETE FROM JwtRevocation r WHERE r.revokedBeforeMillis < :oldestRelevant")
+    int deleteOlderThan(@Param("oldestRelevant") long oldestRelevant);
+}
@@ -1,22 +1,50 @@
 package com.java_avanade.spring_app.repositories;
 
 import com.java_avanade.spring_app.models.Order;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
+    // Consultas que alimentam o OrderDTO carregam cliente e itens junto com o pedido
+    @Override
+    @EntityGraph(Order.VIEW_GRAPH)
+    List<Order> findAll();
+
+    @EntityGraph(Order.VIEW_GRAPH)
+    Optional<Order> findViewByOrderId(Long orderId);
+
+    @EntityGraph(Order.VIEW_GRAPH)
     List<Order> findByClientId(Long clientId);
 
+    @EntityGraph(Order.VIEW_GRAPH)
     @Query("SELECT o FROM Order o WHERE o.client.id = :clientId AND o.status = :status")
     List<Order> findOrderListByClientIdAndStatus(Long clientId, String status);
 
-    @Query("SELECT o FROM Order o JOIN o.cartItems c WHERE c.product.affiliate.id = :affiliateId")
+    // EXISTS em vez de JOIN: cada pedido aparece uma vez, mesmo com vários itens do afiliado
+    @EntityGraph(Order.VIEW_GRAPH)
+    @Query("SELECT o FROM Order o WHERE EXISTS (" +
+            "SELECT c.id FROM Cart c WHERE c.order = o AND c.product.affiliate.id = :affiliateId)")
     List<Order> findOrdersByAffiliateId(Long affiliateId);
 
+    @EntityGraph(Order.VIEW_GRAPH)
     Optional<Order> findByClientIdAndStatus(Long clientId, String status);
+
+    boolean existsByOrderIdAndClient_Id(Long orderId, Long clientId);
+
+    // Aplica a variação de um item ao total no próprio UPDATE, sem ler os demais itens do pedido
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Order o SET o.totalAmount = o.totalAmount + :delta WHERE o.orderId = :orderId")
+    int addToTotalAmount(@Param("orderId") Long orderId, @Param("delta") BigDecimal delta);
+
+    @Query("SELECT o.totalAmount FROM Order o WHERE o.orderId = :orderId")
+    Optional<BigDecimal> findTotalAmountById(@Param("orderId") Long orderId);
 }
\ No newline at end of file
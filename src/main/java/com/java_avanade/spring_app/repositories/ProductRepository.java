@@ -1,21 +1,97 @@
 package com.java_avanade.spring_app.repositories;
 
+import com.java_avanade.spring_app.dtos.ProductDTO;
 import com.java_avanade.spring_app.models.Product;
+import com.java_avanade.spring_app.search.FacetSource;
+import com.java_avanade.spring_app.search.ProductDocument;
+import com.java_avanade.spring_app.search.SuggestionSource;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, Long> {
+public interface ProductRepository extends JpaRepository<Product, Long>, ProductRepositoryCustom {
+    // Listagens do catálogo: produto, afiliado e estoque disponível (coluna desnormalizada) em uma única consulta
+    String CATALOG_SELECT = "SELECT new com.java_avanade.spring_app.dtos.ProductDTO(" +
+            "p.productCode, p.name, p.description, p.price, p.productType, p.productChoice, " +
+            "a.id, a.name, p.availableStock, p.imageUrl) " +
+            "FROM Product p LEFT JOIN p.affiliate a ";
+    String CATALOG_ORDER_BY = " ORDER BY p.productCode";
+
     List<Product> findByAffiliateId(Long affiliateId);
 
-    @Query("SELECT p FROM Product p WHERE " +
-            "p.name LIKE %:keyword% OR " +
-            "p.description LIKE %:keyword% OR " +
-            "p.productType LIKE %:keyword%")
-    List<Product> searchByKeyword(String keyword);
+    // Carga do índice de busca em memória, por keyset sobre productCode
+    @Query("SELECT new com.java_avanade.spring_app.search.ProductDocument(" +
+            "p.productCode, p.name, p.description, p.productType, p.price) " +
+            "FROM Product p WHERE p.productCode > :afterCode ORDER BY p.productCode")
+    List<ProductDocument> findSearchDocuments(@Param("afterCode") Long afterCode, Pageable pageable);
+
+    // Carga do índice de autocompletar: nome, tipo e estoque total, por keyset sobre productCode
+    @Query("SELECT new com.java_avanade.spring_app.search.SuggestionSource(" +
+            "p.productCode, p.name, p.productType, p.availableStock) " +
+            "FROM Product p WHERE p.productCode > :afterCode ORDER BY p.productCode")
+    List<SuggestionSource> findSuggestionSources(@Param("afterCode") Long afterCode, Pageable pageable);
+
+    // Atualização incremental do autocompletar: apenas os produtos alterados
+    @Query("SELECT new com.java_avanade.spring_app.search.SuggestionSource(" +
+            "p.productCode, p.name, p.productType, p.availableStock) " +
+            "FROM Product p WHERE p.productCode IN :productCodes")
+    List<SuggestionSource> findSuggestionSourcesByIds(@Param("productCodes") Collection<Long> productCodes);
+
+    // Carga dos bitmaps de facetas: tipo, escolha, preço e estoque total
+    String FACET_SELECT = "SELECT new com.java_avanade.spring_app.search.FacetSource(" +
+            "p.productCode, p.productType, p.productChoice, p.price, p.availableStock) FROM Product p ";
+    String FACET_ORDER_BY = " ORDER BY p.productCode";
+
+    @Query(FACET_SELECT + "WHERE p.productCode > :afterCode" + FACET_ORDER_BY)
+    List<FacetSource> findFacetSources(@Param("afterCode") Long afterCode, Pageable pageable);
+
+    @Query(FACET_SELECT + "WHERE p.productCode IN :productCodes" + FACET_ORDER_BY)
+    List<FacetSource> findFacetSourcesByIds(@Param("productCodes") Collection<Long> productCodes);
 
     List<Product> findByProductType(String productType);
+
+    boolean existsByProductCodeAndAffiliate_Id(Long productCode, Long affiliateId);
+
+    @Query("SELECT p.availableStock FROM Product p WHERE p.productCode = :productCode")
+    Integer findAvailableStockById(@Param("productCode") Long productCode);
+
+    // Mantém products.available_stock em sincronia com stocks, na mesma transação da alteração de estoque.
+    // flushAutomatically grava antes as alterações pendentes em stocks: a linha de stocks é sempre travada antes da de products
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.availableStock = p.availableStock + :delta WHERE p.productCode = :productCode")
+    int adjustAvailableStock(@Param("productCode") Long productCode, @Param("delta") Integer delta);
+
+    // Reconciliação: produtos cuja coluna difere da soma de stocks (produto, coluna, soma)
+    @Query("SELECT p.productCode, p.availableStock, COALESCE(SUM(s.quantity), 0) FROM Product p LEFT JOIN p.stocks s " +
+            "GROUP BY p.productCode, p.availableStock HAVING p.availableStock <> COALESCE(SUM(s.quantity), 0)")
+    List<Object[]> findAvailableStockDrift();
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Product p SET p.availableStock = " +
+            "(SELECT COALESCE(SUM(s.quantity), 0) FROM Stock s WHERE s.product.productCode = :productCode) " +
+            "WHERE p.productCode = :productCode")
+    int recomputeAvailableStock(@Param("productCode") Long productCode);
+
+    @Query(CATALOG_SELECT + "WHERE p.productCode IN :productCodes" + CATALOG_ORDER_BY)
+    List<ProductDTO> findCatalogByIds(@Param("productCodes") Collection<Long> productCodes);
+
+    @Query(CATALOG_SELECT + "WHERE p.productCode = :productCode" + CATALOG_ORDER_BY)
+    Optional<ProductDTO> findCatalogById(@Param("productCode") Long productCode);
+
+    @Query(CATALOG_SELECT + "WHERE a.id = :affiliateId" + CATALOG_ORDER_BY)
+    List<ProductDTO> findCatalogByAffiliateId(@Param("affiliateId") Long affiliateId);
+
+    // Página do catálogo de um afiliado por keyset sobre productCode (índice affiliate_id, product_code)
+    @Query(CATALOG_SELECT + "WHERE a.id = :affiliateId AND p.productCode > :afterCode" + CATALOG_ORDER_BY)
+    List<ProductDTO> findCatalogPageByAffiliateId(@Param("affiliateId") Long affiliateId,
+                                                  @Param("afterCode") Long afterCode,
+                                                  Pageable pageable);
 }
\ No newline at end of file
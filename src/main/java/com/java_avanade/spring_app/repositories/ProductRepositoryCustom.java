@@ -0,0 +1,20 @@
+package com.java_avanade.spring_app.repositories;
+
+import java.util.List;
+
+/**
+ * Consultas do catálogo com paginação por keyset, montadas dinamicamente conforme filtro e ordenação.
+ */
+public interface ProductRepositoryCustom {
+
+    enum CatalogSort {
+        PRICE, NAME, NEWEST
+    }
+
+    // Posição após a qual a próxima página começa: chave de ordenação do último item e seu productCode
+    record CatalogKey(Long productCode, String sortValue) {
+    }
+
+    // Retorna até limit códigos de produto na ordem pedida, começando após a chave informada (null = primeira página)
+    List<Long> findCatalogPageIds(String productType, String keyword, CatalogSort sort, CatalogKey after, int limit);
+}
@@ -0,0 +1,62 @@
+package com.java_avanade.spring_app.repositories;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Implementação da paginação por keyset: filtra apenas a tabela products (índices por ordenação)
+ * e devolve os códigos da página; o agregado de estoque é carregado depois só para esses códigos.
+ */
+public class ProductRepositoryImpl implements ProductRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Long> findCatalogPageIds(String productType, String keyword, CatalogSort sort, CatalogKey after, int limit) {
+        StringBuilder jpql = new StringBuilder("SELECT p.productCode FROM Product p WHERE 1 = 1");
+        Map<String, Object> parameters = new HashMap<>();
+
+        if (productType != null) {
+            jpql.append(" AND p.productType = :productType");
+            parameters.put("productType", productType);
+        }
+        if (keyword != null) {
+            jpql.append(" AND (p.name LIKE :keyword OR p.description LIKE :keyword OR p.productType LIKE :keyword)");
+            parameters.put("keyword", "%" + keyword + "%");
+        }
+
+        if (after != null) {
+            switch (sort) {
+                case NEWEST -> jpql.append(" AND p.productCode < :lastCode");
+                case PRICE -> {
+                    jpql.append(" AND (p.price > :lastValue OR (p.price = :lastValue AND p.productCode > :lastCode))");
+                    parameters.put("lastValue", new BigDecimal(after.sortValue()));
+                }
+                case NAME -> {
+                    jpql.append(" AND (p.name > :lastValue OR (p.name = :lastValue AND p.productCode > :lastCode))");
+                    parameters.put("lastValue", after.sortValue());
+                }
+            }
+            parameters.put("lastCode", after.productCode());
+        }
+
+        jpql.append(switch (sort) {
+            case NEWEST -> " ORDER BY p.productCode DESC";
+            case PRICE -> " ORDER BY p.price ASC, p.productCode ASC";
+            case NAME -> " ORDER BY p.name ASC, p.productCode ASC";
+        });
+
+        TypedQuery<Long> query = entityManager.createQuery(jpql.toString(), Long.class);
+        parameters.forEach(query::setParameter);
+        query.setMaxResults(limit);
+        return new ArrayList<>(query.getResultList());
+    }
+}
@@ -0,0 +1,33 @@
+package com.java_avanade.spring_app.repositories;
+
+import com.java_avanade.spring_app.models.StockHold;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockHoldRepository extends JpaRepository<StockHold, Long> {
+    Optional<StockHold> findByCartItemId(Long cartItemId);
+
+    List<StockHold> findByOrderId(Long orderId);
+
+    // Percorre o índice de expiração, em lotes
+    @Query("SELECT h FROM StockHold h WHERE h.expiresAt < :now ORDER BY h.expiresAt")
+    List<StockHold> findExpired(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Remoções condicionais: 1 linha afetada indica que esta transação obteve a reserva
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM StockHold h WHERE h.id = :id")
+    int deleteHoldById(@Param("id") Long id);
+
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM StockHold h WHERE h.id = :id AND h.expiresAt < :now")
+    int deleteIfExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+}
@@ -1,11 +1,14 @@
 package com.java_avanade.spring_app.repositories;
 
+import com.java_avanade.spring_app.dtos.StockQuantityDTO;
 import com.java_avanade.spring_app.models.Stock;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +22,33 @@ public interface StockRepository extends JpaRepository<Stock, Long> {
 
     @Query("SELECT SUM(s.quantity) FROM Stock s WHERE s.product.productCode = :productId")
     Integer getTotalQuantityByProductId(@Param("productId") Long productId);
+
+    // Quantidade total de vários produtos em uma consulta; produtos inexistentes não aparecem no resultado
+    @Query("SELECT new com.java_avanade.spring_app.dtos.StockQuantityDTO(p.productCode, p.availableStock) " +
+            "FROM Product p WHERE p.productCode IN :productIds")
+    List<StockQuantityDTO> findTotalQuantitiesByProductIds(@Param("productIds") Collection<Long> productIds);
+
+    boolean existsByIdAndProduct_Affiliate_Id(Long id, Long affiliateId);
+
+    @Query("SELECT s.id FROM Stock s WHERE s.product.productCode = :productId")
+    Long findStockIdByProductId(@Param("productId") Long productId);
+
+    @Query("SELECT s.quantity FROM Stock s WHERE s.id = :id")
+    Integer findQuantityById(@Param("id") Long id);
+
+    // Decrementa em um único UPDATE somente se houver quantidade suficiente; 0 linhas afetadas indica falta de estoque.
+    // Correto porque cada produto tem um único registro de estoque (uk_stocks_product_id), que guarda o saldo inteiro
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Stock s SET s.quantity = s.quantity - :quantity " +
+            "WHERE s.product.productCode = :productId AND s.quantity >= :quantity")
+    int decrementIfAvailable(@Param("productId") Long productId, @Param("quantity") Integer quantity);
+
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Stock s SET s.quantity = s.quantity + :quantity WHERE s.id = :id")
+    int incrementQuantity(@Param("id") Long id, @Param("quantity") Integer quantity);
+
+    // Devolve quantidade ao registro de estoque do produto; 0 linhas afetadas indica produto sem estoque
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Stock s SET s.quantity = s.quantity + :quantity WHERE s.product.productCode = :productId")
+    int incrementByProductId(@Param("productId") Long productId, @Param("quantity") Integer quantity);
 }
\ No newline at end of file
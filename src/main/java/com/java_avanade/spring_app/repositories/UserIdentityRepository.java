@@ -0,0 +1,15 @@
+package com.java_avanade.spring_app.repositories;
+
+import com.java_avanade.spring_app.models.UserIdentity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface UserIdentityRepository extends JpaRepository<UserIdentity, Long> {
+    Optional<UserIdentity> findByUsername(String username);
+    Optional<UserIdentity> findByUserTypeAndEntityId(String userType, Long entityId);
+    List<UserIdentity> findByUsernameOrEmail(String username, String email);
+}
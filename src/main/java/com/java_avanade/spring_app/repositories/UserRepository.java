@@ -2,6 +2,8 @@ package com.java_avanade.spring_app.repositories;
 
 import com.java_avanade.spring_app.models.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -12,4 +14,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
     Boolean existsByUsername(String username);
     Boolean existsByEmail(String email);
+
+    @Query("SELECT CASE WHEN COUNT(u) > 0 THEN true ELSE false END FROM User u JOIN u.roles r " +
+            "WHERE u.id = :id AND r = :role")
+    boolean existsByIdAndRole(@Param("id") Long id, @Param("role") String role);
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.java_avanade.spring_app.search;
+
+import java.math.BigDecimal;
+
+/**
+ * Atributos filtráveis de um produto e seu estoque total, usados para montar os bitmaps de facetas.
+ */
+public record FacetSource(Long productCode, String productType, String productChoice, BigDecimal price,
+                          Integer availableStock) {
+}
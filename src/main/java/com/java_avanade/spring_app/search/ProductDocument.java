@@ -0,0 +1,9 @@
+package com.java_avanade.spring_app.search;
+
+import java.math.BigDecimal;
+
+/**
+ * Campos de um produto usados pelo índice de busca (carregados por projeção, sem afiliado nem estoque).
+ */
+public record ProductDocument(Long productCode, String name, String description, String productType, BigDecimal price) {
+}
@@ -0,0 +1,418 @@
+package com.java_avanade.spring_app.search;
+
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Facetas do catálogo em bitmaps: cada produto recebe um ordinal e cada valor de faceta
+ * (tipo, escolha, faixa de preço, em estoque) guarda um BitSet com os ordinais que o possuem.
+ *
+ * Um filtro combinado é a interseção dos bitmaps selecionados (o intervalo exato de preço é
+ * resolvido sobre o array de preços por ordinal) e a contagem de cada valor é a cardinalidade
+ * da interseção com os demais filtros ativos, como em facetas disjuntivas: selecionar um tipo
+ * não zera a contagem dos outros tipos.
+ *
+ * Os bitmaps são montados na inicialização e atualizados em lote, logo após o commit, para os
+ * produtos cujo cadastro ou estoque mudou. A ordem dos ordinais é sempre a ordem de productCode,
+ * da qual depende a paginação: produtos novos são anexados ao final em ordem crescente, e um
+ * código menor que o do último ordinal (sequências alocadas em blocos por instância, commits fora
+ * de ordem) força a reconstrução. Uma reconstrução periódica recebe as alterações feitas por
+ * outras instâncias e descarta os ordinais de produtos removidos.
+ */
+@Component
+public class ProductFacetIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductFacetIndex.class);
+
+    public static final String FACET_TYPE = "productType";
+    public static final String FACET_CHOICE = "productChoice";
+    public static final String FACET_PRICE_BAND = "priceBand";
+    public static final String FACET_IN_STOCK = "inStock";
+
+    private static final int REFRESH_CHUNK_SIZE = 500;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${search.index.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    // Limites superiores (exclusivos) das faixas de preço; a última faixa é aberta
+    private final BigDecimal[] bandLimits;
+    private final String[] bandLabels;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guardado pelo lock; substituído por inteiro na reconstrução
+    private State state;
+
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean ready = false;
+
+    public record FacetQuery(String productType, String productChoice, BigDecimal minPrice, BigDecimal maxPrice,
+                             boolean inStockOnly) {
+    }
+
+    public record FacetResult(List<Long> productCodes, boolean hasMore, int total,
+                              Map<String, Map<String, Integer>> facets) {
+    }
+
+    private record Row(Long productCode, String typeKey, String choiceKey, int band, BigDecimal price) {
+    }
+
+    private static final class State {
+        private final List<Row> rows = new ArrayList<>();
+        private final Map<Long, Integer> ordinals = new HashMap<>();
+        private final BitSet live = new BitSet();
+        private final BitSet inStock = new BitSet();
+        private final Map<String, BitSet> types = new HashMap<>();
+        private final Map<String, BitSet> choices = new HashMap<>();
+        private final Map<String, String> labels = new HashMap<>();
+        private final BitSet[] bands;
+
+        private State(int bandCount) {
+            bands = new BitSet[bandCount];
+            for (int i = 0; i < bandCount; i++) {
+                bands[i] = new BitSet();
+            }
+        }
+    }
+
+    public ProductFacetIndex(@Value("${search.facets.price-bands:50,100,200,500}") String priceBands) {
+        this.bandLimits = Arrays.stream(priceBands.split(","))
+                .map(String::trim)
+                .map(BigDecimal::new)
+                .sorted()
+                .toArray(BigDecimal[]::new);
+        this.bandLabels = new String[bandLimits.length + 1];
+        BigDecimal lower = BigDecimal.ZERO;
+        for (int i = 0; i < bandLimits.length; i++) {
+            bandLabels[i] = lower.toPlainString() + "-" + bandLimits[i].toPlainString();
+            lower = bandLimits[i];
+        }
+        bandLabels[bandLimits.length] = lower.toPlainString() + "+";
+        this.state = new State(bandLabels.length);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // Agenda a atualização das facetas do produto para depois do commit da transação atual
+    public void markDirtyAfterCommit(Long productCode) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty.add(productCode);
+                }
+            });
+        } else {
+            dirty.add(productCode);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        State rebuilt = new State(bandLabels.length);
+        Long lastCode = 0L;
+        List<FacetSource> batch;
+        do {
+            batch = productRepository.findFacetSources(lastCode, PageRequest.of(0, rebuildBatchSize));
+            for (FacetSource source : batch) {
+                apply(rebuilt, source);
+                lastCode = source.productCode();
+            }
+        } while (batch.size() == rebuildBatchSize);
+
+        lock.writeLock().lock();
+        try {
+            state = rebuilt;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Facetas do catálogo reconstruídas: {} produtos em {} ms",
+                rebuilt.live.cardinality(), System.currentTimeMillis() - start);
+    }
+
+    // Ressincronização completa com o banco, compartilhado entre as instâncias
+    @Scheduled(fixedDelayString = "${search.facets.resync-interval-ms:300000}",
+            initialDelayString = "${search.facets.resync-interval-ms:300000}")
+    public void resync() {
+        rebuild();
+    }
+
+    // Recarrega, em lote, apenas os produtos alterados desde a última execução
+    @Scheduled(fixedDelayString = "${search.facets.refresh-interval-ms:1000}")
+    public synchronized void refreshDirty() {
+        if (!ready || dirty.isEmpty()) {
+            return;
+        }
+        List<Long> pending = new ArrayList<>(dirty);
+        dirty.removeAll(pending);
+        // Em ordem crescente, os produtos novos recebem ordinais na ordem de productCode
+        Collections.sort(pending);
+
+        boolean outOfOrder = false;
+        for (int from = 0; from < pending.size(); from += REFRESH_CHUNK_SIZE) {
+            List<Long> chunk = pending.subList(from, Math.min(from + REFRESH_CHUNK_SIZE, pending.size()));
+            List<FacetSource> sources;
+            try {
+                sources = productRepository.findFacetSourcesByIds(chunk);
+            } catch (RuntimeException e) {
+                dirty.addAll(pending.subList(from, pending.size()));
+                logger.error("Falha ao atualizar facetas; nova tentativa no próximo ciclo", e);
+                return;
+            }
+
+            Set<Long> removed = new HashSet<>(chunk);
+            lock.writeLock().lock();
+            try {
+                if (appendsBeforeLastOrdinal(state, sources)) {
+                    outOfOrder = true;
+                    break;
+                }
+                for (FacetSource source : sources) {
+                    apply(state, source);
+                    removed.remove(source.productCode());
+                }
+                removed.forEach(productCode -> remove(state, productCode));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        if (outOfOrder) {
+            logger.debug("Produto novo com código anterior ao último ordinal; reconstruindo as facetas");
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                dirty.addAll(pending);
+                logger.error("Falha ao reconstruir facetas; nova tentativa no próximo ciclo", e);
+            }
+            return;
+        }
+        logger.debug("Facetas atualizadas para {} produtos", pending.size());
+    }
+
+    // Produto ainda sem ordinal cujo código é menor que o do último ordinal quebraria a ordem da paginação
+    private boolean appendsBeforeLastOrdinal(State target, List<FacetSource> sources) {
+        if (target.rows.isEmpty()) {
+            return false;
+        }
+        Long lastCode = target.rows.get(target.rows.size() - 1).productCode();
+        for (FacetSource source : sources) {
+            if (!target.ordinals.containsKey(source.productCode()) && source.productCode() < lastCode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Produtos que atendem a todos os filtros, em ordem de productCode, a partir de afterCode
+    public FacetResult filter(FacetQuery query, Long afterCode, int limit) {
+        lock.readLock().lock();
+        try {
+            State current = state;
+            BitSet typeFilter = query.productType() != null
+                    ? bitsOrEmpty(current.types, key(query.productType())) : null;
+            BitSet choiceFilter = query.productChoice() != null
+                    ? bitsOrEmpty(current.choices, key(query.productChoice())) : null;
+            BitSet priceFilter = query.minPrice() != null || query.maxPrice() != null
+                    ? priceRange(current, query.minPrice(), query.maxPrice()) : null;
+            BitSet stockFilter = query.inStockOnly() ? current.inStock : null;
+
+            BitSet matches = intersect(current.live, typeFilter, choiceFilter, priceFilter, stockFilter);
+
+            Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+            facets.put(FACET_TYPE, countValues(current, FACET_TYPE, current.types,
+                    intersect(current.live, choiceFilter, priceFilter, stockFilter)));
+            facets.put(FACET_CHOICE, countValues(current, FACET_CHOICE, current.choices,
+                    intersect(current.live, typeFilter, priceFilter, stockFilter)));
+            facets.put(FACET_PRICE_BAND, countBands(current,
+                    intersect(current.live, typeFilter, choiceFilter, stockFilter)));
+            BitSet withoutStockFilter = intersect(current.live, typeFilter, choiceFilter, priceFilter);
+            Map<String, Integer> stockCounts = new LinkedHashMap<>();
+            stockCounts.put("true", countAnd(withoutStockFilter, current.inStock));
+            stockCounts.put("false", withoutStockFilter.cardinality() - stockCounts.get("true"));
+            facets.put(FACET_IN_STOCK, stockCounts);
+
+            List<Long> productCodes = new ArrayList<>(limit);
+            int ordinal = matches.nextSetBit(afterCode != null ? firstOrdinalAfter(current, afterCode) : 0);
+            while (ordinal >= 0 && productCodes.size() <= limit) {
+                productCodes.add(current.rows.get(ordinal).productCode());
+                ordinal = matches.nextSetBit(ordinal + 1);
+            }
+            boolean hasMore = productCodes.size() > limit;
+            if (hasMore) {
+                productCodes.remove(productCodes.size() - 1);
+            }
+            return new FacetResult(productCodes, hasMore, matches.cardinality(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(State target, FacetSource source) {
+        Integer existing = target.ordinals.get(source.productCode());
+        int ordinal;
+        if (existing != null) {
+            ordinal = existing;
+            clearBits(target, ordinal);
+        } else {
+            ordinal = target.rows.size();
+            target.rows.add(null);
+            target.ordinals.put(source.productCode(), ordinal);
+        }
+
+        String typeKey = key(source.productType());
+        String choiceKey = key(source.productChoice());
+        int band = band(source.price());
+        target.rows.set(ordinal, new Row(source.productCode(), typeKey, choiceKey, band, source.price()));
+
+        target.live.set(ordinal);
+        target.types.computeIfAbsent(typeKey, k -> new BitSet()).set(ordinal);
+        target.choices.computeIfAbsent(choiceKey, k -> new BitSet()).set(ordinal);
+        target.labels.putIfAbsent(FACET_TYPE + ":" + typeKey, source.productType().trim());
+        target.labels.putIfAbsent(FACET_CHOICE + ":" + choiceKey, source.productChoice().trim());
+        target.bands[band].set(ordinal);
+        if (source.availableStock() != null && source.availableStock() > 0) {
+            target.inStock.set(ordinal);
+        }
+    }
+
+    // O ordinal do produto removido não é reaproveitado; a reconstrução seguinte compacta os bitmaps
+    private void remove(State target, Long productCode) {
+        Integer ordinal = target.ordinals.get(productCode);
+        if (ordinal != null && target.live.get(ordinal)) {
+            clearBits(target, ordinal);
+        }
+    }
+
+    private void clearBits(State target, int ordinal) {
+        Row row = target.rows.get(ordinal);
+        target.live.clear(ordinal);
+        target.inStock.clear(ordinal);
+        target.bands[row.band()].clear(ordinal);
+        BitSet typeBits = target.types.get(row.typeKey());
+        if (typeBits != null) {
+            typeBits.clear(ordinal);
+        }
+        BitSet choiceBits = target.choices.get(row.choiceKey());
+        if (choiceBits != null) {
+            choiceBits.clear(ordinal);
+        }
+    }
+
+    private BitSet priceRange(State current, BigDecimal minPrice, BigDecimal maxPrice) {
+        BitSet bits = new BitSet(current.rows.size());
+        for (int ordinal = current.live.nextSetBit(0); ordinal >= 0; ordinal = current.live.nextSetBit(ordinal + 1)) {
+            BigDecimal price = current.rows.get(ordinal).price();
+            if ((minPrice == null || price.compareTo(minPrice) >= 0)
+                    && (maxPrice == null || price.compareTo(maxPrice) <= 0)) {
+                bits.set(ordinal);
+            }
+        }
+        return bits;
+    }
+
+    private Map<String, Integer> countValues(State current, String facet, Map<String, BitSet> values, BitSet base) {
+        String prefix = facet + ":";
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        values.forEach((valueKey, bits) -> {
+            int count = countAnd(base, bits);
+            if (count > 0) {
+                counts.put(current.labels.get(prefix + valueKey), count);
+            }
+        });
+        return counts;
+    }
+
+    private Map<String, Integer> countBands(State current, BitSet base) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < bandLabels.length; i++) {
+            counts.put(bandLabels[i], countAnd(base, current.bands[i]));
+        }
+        return counts;
+    }
+
+    // Busca binária pelo primeiro ordinal com productCode maior que o do cursor
+    private int firstOrdinalAfter(State current, Long afterCode) {
+        int low = 0;
+        int high = current.rows.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (current.rows.get(middle).productCode() <= afterCode) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int band(BigDecimal price) {
+        for (int i = 0; i < bandLimits.length; i++) {
+            if (price.compareTo(bandLimits[i]) < 0) {
+                return i;
+            }
+        }
+        return bandLimits.length;
+    }
+
+    private static BitSet intersect(BitSet base, BitSet... filters) {
+        BitSet result = (BitSet) base.clone();
+        for (BitSet filter : filters) {
+            if (filter != null) {
+                result.and(filter);
+            }
+        }
+        return result;
+    }
+
+    private static int countAnd(BitSet first, BitSet second) {
+        BitSet result = (BitSet) first.clone();
+        result.and(second);
+        return result.cardinality();
+    }
+
+    private static BitSet bitsOrEmpty(Map<String, BitSet> values, String valueKey) {
+        BitSet bits = values.get(valueKey);
+        return bits != null ? bits : new BitSet();
+    }
+
+    // "Ecológica" e "ecologica" são o mesmo valor de faceta
+    private static String key(String value) {
+        return ProductSearchIndex.fold(value).trim();
+    }
+}
@@ -0,0 +1,324 @@
+package com.java_avanade.spring_app.search;
+
+import com.java_avanade.spring_app.models.Product;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido em memória sobre nome, tipo e descrição dos produtos.
+ *
+ * O texto é normalizado (minúsculas, acentos removidos) e quebrado em termos; cada termo aponta
+ * para os produtos que o contêm com um peso por campo (nome > tipo > descrição). Consultas com
+ * vários termos exigem todos eles (AND), o último termo também casa por prefixo, e o resultado é
+ * ordenado por relevância (peso × idf). A busca nunca consulta o banco.
+ *
+ * O índice é reconstruído na inicialização e atualizado após o commit das transações que criam,
+ * alteram ou removem produtos. Alterações feitas por outras instâncias (ou importações diretas no
+ * banco) só chegam pela reconstrução periódica. Até a primeira reconstrução terminar,
+ * {@link #isReady()} é false e quem chama deve usar a consulta no banco.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final float NAME_WEIGHT = 3.0f;
+    private static final float TYPE_WEIGHT = 2.0f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{Alnum}]+");
+
+    // Palavras sem valor de busca; ignoradas no índice e nas consultas para não quebrar o AND
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "o", "as", "os", "e", "de", "da", "do", "das", "dos", "em", "na", "no", "nas", "nos",
+            "um", "uma", "para", "com", "por", "sem");
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${search.index.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Guardados pelo lock: termo -> (productCode -> peso) e productCode -> documento indexado
+    private NavigableMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    private Map<Long, IndexedProduct> documents = new HashMap<>();
+
+    // Alterações recebidas durante uma reconstrução, reaplicadas sobre o índice novo (guardado pelo lock)
+    private List<ProductDocument> changesDuringRebuild;
+    private List<Long> removalsDuringRebuild;
+
+    private volatile boolean ready = false;
+
+    public record SearchHit(Long productCode, double score, String name, BigDecimal price) {
+    }
+
+    private record IndexedProduct(ProductDocument document, Map<String, Float> termWeights) {
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    // Ressincroniza com o banco, que é compartilhado entre as instâncias
+    @Scheduled(fixedDelayString = "${search.index.refresh-interval-ms:300000}",
+            initialDelayString = "${search.index.refresh-interval-ms:300000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    // Reconstrói o índice a partir do banco sem bloquear buscas; troca as estruturas ao final
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+            removalsDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        NavigableMap<String, Map<Long, Float>> newPostings = new TreeMap<>();
+        Map<Long, IndexedProduct> newDocuments = new HashMap<>();
+        try {
+            Long lastCode = 0L;
+            List<ProductDocument> batch;
+            do {
+                batch = productRepository.findSearchDocuments(lastCode, PageRequest.of(0, rebuildBatchSize));
+                for (ProductDocument document : batch) {
+                    add(newPostings, newDocuments, document);
+                    lastCode = document.productCode();
+                }
+            } while (batch.size() == rebuildBatchSize);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = null;
+                removalsDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            for (ProductDocument document : changesDuringRebuild) {
+                remove(newPostings, newDocuments, document.productCode());
+                add(newPostings, newDocuments, document);
+            }
+            for (Long productCode : removalsDuringRebuild) {
+                remove(newPostings, newDocuments, productCode);
+            }
+            changesDuringRebuild = null;
+            removalsDuringRebuild = null;
+            postings = newPostings;
+            documents = newDocuments;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        logger.info("Índice de busca de produtos reconstruído: {} produtos, {} termos em {} ms",
+                newDocuments.size(), newPostings.size(), System.currentTimeMillis() - start);
+    }
+
+    // Indexa o produto após o commit da transação atual (ou imediatamente, fora de transação)
+    public void indexAfterCommit(Product product) {
+        ProductDocument document = new ProductDocument(product.getProductCode(), product.getName(),
+                product.getDescription(), product.getProductType(), product.getPrice());
+        afterCommit(() -> index(document));
+    }
+
+    public void removeAfterCommit(Long productCode) {
+        afterCommit(() -> remove(productCode));
+    }
+
+    public void index(ProductDocument document) {
+        lock.writeLock().lock();
+        try {
+            remove(postings, documents, document.productCode());
+            add(postings, documents, document);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(document);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productCode) {
+        lock.writeLock().lock();
+        try {
+            remove(postings, documents, productCode);
+            if (removalsDuringRebuild != null) {
+                removalsDuringRebuild.add(productCode);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Todos os produtos que contêm todos os termos da consulta, do mais relevante para o menos relevante
+    public List<SearchHit> search(String query) {
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documents.size();
+            List<Map<Long, Float>> termPostings = new ArrayList<>(terms.size());
+            for (int i = 0; i < terms.size(); i++) {
+                boolean last = i == terms.size() - 1;
+                Map<Long, Float> matches = last ? prefixPostings(terms.get(i)) : postings.get(terms.get(i));
+                if (matches == null || matches.isEmpty()) {
+                    return Collections.emptyList();
+                }
+                termPostings.add(matches);
+            }
+
+            // Interseção a partir da lista mais curta
+            Map<Long, Float> smallest = termPostings.stream()
+                    .min(Comparator.comparingInt(Map::size))
+                    .orElseThrow();
+
+            List<SearchHit> hits = new ArrayList<>();
+            for (Long productCode : smallest.keySet()) {
+                double score = 0;
+                boolean matchesAll = true;
+                for (Map<Long, Float> matches : termPostings) {
+                    Float weight = matches.get(productCode);
+                    if (weight == null) {
+                        matchesAll = false;
+                        break;
+                    }
+                    score += weight * Math.log(1.0 + (double) documentCount / matches.size());
+                }
+                if (matchesAll) {
+                    ProductDocument document = documents.get(productCode).document();
+                    hits.add(new SearchHit(productCode, score, document.name(), document.price()));
+                }
+            }
+
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                    .thenComparing(SearchHit::productCode));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Minúsculas, sem acentos ("Câmera Fotográfica" -> "camera", "fotografica"), sem stop words
+    public static List<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Collections.emptyList();
+        }
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARATORS.split(fold(text))) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    // Minúsculas e sem acentos, preservando separadores ("Câmera Fotográfica" -> "camera fotografica")
+    public static String fold(String text) {
+        return DIACRITICS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    // Une as listas de todos os termos iniciados pelo prefixo, mantendo o maior peso por produto
+    private Map<Long, Float> prefixPostings(String prefix) {
+        NavigableMap<String, Map<Long, Float>> range = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        if (range.size() == 1) {
+            return range.firstEntry().getValue();
+        }
+        Map<Long, Float> merged = new HashMap<>();
+        for (Map<Long, Float> matches : range.values()) {
+            matches.forEach((productCode, weight) -> merged.merge(productCode, weight, Math::max));
+        }
+        return merged;
+    }
+
+    private static void add(NavigableMap<String, Map<Long, Float>> postings, Map<Long, IndexedProduct> documents,
+                            ProductDocument document) {
+        Map<String, Float> termWeights = new HashMap<>();
+        addField(termWeights, document.name(), NAME_WEIGHT);
+        addField(termWeights, document.productType(), TYPE_WEIGHT);
+        addField(termWeights, document.description(), DESCRIPTION_WEIGHT);
+
+        termWeights.forEach((term, weight) ->
+                postings.computeIfAbsent(term, t -> new HashMap<>()).put(document.productCode(), weight));
+        documents.put(document.productCode(), new IndexedProduct(document, termWeights));
+    }
+
+    private static void addField(Map<String, Float> termWeights, String text, float weight) {
+        for (String term : tokenize(text)) {
+            termWeights.merge(term, weight, Float::sum);
+        }
+    }
+
+    private static void remove(NavigableMap<String, Map<Long, Float>> postings, Map<Long, IndexedProduct> documents,
+                               Long productCode) {
+        IndexedProduct indexed = documents.remove(productCode);
+        if (indexed == null) {
+            return;
+        }
+        for (String term : indexed.termWeights().keySet()) {
+            Map<Long, Float> matches = postings.get(term);
+            if (matches != null) {
+                matches.remove(productCode);
+                if (matches.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
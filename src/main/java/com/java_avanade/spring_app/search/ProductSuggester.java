@@ -0,0 +1,415 @@
+package com.java_avanade.spring_app.search;
+
+import com.java_avanade.spring_app.dtos.SuggestionDTO;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Autocompletar de nomes e tipos de produto a partir de um trie imutável em memória.
+ *
+ * Cada nó guarda seus filhos em arrays ordenados (busca binária por caractere), as sugestões que
+ * terminam nele e as N melhores sugestões da sua subárvore, já ordenadas por estoque disponível.
+ * Uma consulta percorre apenas os caracteres do prefixo e copia essa lista: não há varredura da
+ * subárvore nem acesso ao banco. Sugestões casam pelo início do texto ou pelo início de qualquer
+ * palavra ("azul" encontra "Camiseta Azul").
+ *
+ * O trie é montado por inteiro na inicialização e na ressincronização periódica com o banco, e
+ * publicado por troca de referência (copy-on-write). Produtos alterados (cadastro ou estoque) são
+ * aplicados em seguida, um a um: apenas os nós nos caminhos das sugestões afetadas são copiados, e
+ * suas N melhores são recalculadas a partir das dos filhos. Os nós têm um caractere cada, sem
+ * compressão de caminhos: mais nós em memória, em troca de consultas e atualizações simples.
+ */
+@Component
+public class ProductSuggester {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggester.class);
+
+    private static final String KIND_NAME = "NAME";
+    private static final String KIND_TYPE = "TYPE";
+
+    private static final Comparator<Suggestion> RANKING = Comparator.comparingInt(Suggestion::availableStock).reversed()
+            .thenComparing(Suggestion::text);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Value("${search.suggest.top-n:10}")
+    private int topN;
+
+    @Value("${search.index.rebuild-batch-size:500}")
+    private int rebuildBatchSize;
+
+    private volatile Node root = Node.EMPTY;
+
+    // Produtos alterados desde a última atualização incremental
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+
+    // Guardados pelo monitor: última versão de cada produto e sugestões agregadas por tipo e texto normalizado
+    private Map<Long, SuggestionSource> sources = new HashMap<>();
+    private Map<String, Aggregate> aggregates = new HashMap<>();
+
+    // id = tipo + texto normalizado; key = texto normalizado, o caminho no trie
+    private record Suggestion(String id, String key, String text, String kind, int availableStock) {
+    }
+
+    // Nomes repetidos e tipos somam o estoque dos produtos correspondentes
+    private record Aggregate(Suggestion suggestion, int products) {
+    }
+
+    private record Node(char[] labels, Node[] children, Suggestion[] terminals, Suggestion[] top) {
+        static final Node EMPTY = new Node(new char[0], new Node[0], new Suggestion[0], new Suggestion[0]);
+
+        Node child(char c) {
+            int position = Arrays.binarySearch(labels, c);
+            return position >= 0 ? children[position] : null;
+        }
+
+        boolean isEmpty() {
+            return labels.length == 0 && terminals.length == 0;
+        }
+    }
+
+    // Nó mutável usado apenas durante a construção completa
+    private static final class NodeBuilder {
+        private final TreeMap<Character, NodeBuilder> children = new TreeMap<>();
+        private final List<Suggestion> terminals = new ArrayList<>();
+        private final List<Suggestion> top = new ArrayList<>();
+    }
+
+    public List<SuggestionDTO> suggest(String prefix, int limit) {
+        if (prefix == null || prefix.isBlank()) {
+            return Collections.emptyList();
+        }
+        Node node = root;
+        for (char c : normalize(prefix).toCharArray()) {
+            node = node.child(c);
+            if (node == null) {
+                return Collections.emptyList();
+            }
+        }
+
+        int count = Math.min(limit, node.top().length);
+        List<SuggestionDTO> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Suggestion suggestion = node.top()[i];
+            result.add(new SuggestionDTO(suggestion.text(), suggestion.kind(), suggestion.availableStock()));
+        }
+        return result;
+    }
+
+    public int maxSuggestions() {
+        return topN;
+    }
+
+    // Agenda a atualização do produto após o commit da transação atual (cadastro, alteração, remoção ou estoque)
+    public void markDirtyAfterCommit(Long productCode) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dirty.add(productCode);
+                }
+            });
+        } else {
+            dirty.add(productCode);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${search.suggest.dirty-check-interval-ms:1000}")
+    public void applyDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Long> productCodes = new ArrayList<>(dirty);
+        dirty.removeAll(productCodes);
+        apply(productCodes);
+    }
+
+    // Ressincronização completa: alterações de outras instâncias e estoque gravado pelo motor em memória
+    @Scheduled(fixedDelayString = "${search.suggest.refresh-interval-ms:300000}",
+            initialDelayString = "${search.suggest.refresh-interval-ms:300000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+
+        Map<Long, SuggestionSource> newSources = new HashMap<>();
+        Map<String, Aggregate> newAggregates = new HashMap<>();
+        Long lastCode = 0L;
+        List<SuggestionSource> batch;
+        do {
+            batch = productRepository.findSuggestionSources(lastCode, PageRequest.of(0, rebuildBatchSize));
+            for (SuggestionSource source : batch) {
+                newSources.put(source.productCode(), source);
+                contribute(newAggregates, source, 1);
+                lastCode = source.productCode();
+            }
+        } while (batch.size() == rebuildBatchSize);
+
+        Suggestion[] ranked = newAggregates.values().stream()
+                .map(Aggregate::suggestion)
+                .sorted(RANKING)
+                .toArray(Suggestion[]::new);
+
+        // Inserção em ordem de ranking: cada nó mantém as primeiras N sugestões que o alcançam
+        NodeBuilder builder = new NodeBuilder();
+        for (Suggestion suggestion : ranked) {
+            String key = suggestion.key();
+            for (int startOfWord = 0; startOfWord < key.length(); startOfWord++) {
+                if (startOfWord == 0 || key.charAt(startOfWord - 1) == ' ') {
+                    insert(builder, key, startOfWord, suggestion);
+                }
+            }
+        }
+
+        sources = newSources;
+        aggregates = newAggregates;
+        root = freeze(builder);
+        logger.debug("Índice de autocompletar reconstruído com {} sugestões em {} ms",
+                ranked.length, System.currentTimeMillis() - start);
+    }
+
+    // Recarrega apenas os produtos informados e atualiza os caminhos das sugestões cujo estoque ou existência mudou
+    private synchronized void apply(List<Long> productCodes) {
+        long start = System.currentTimeMillis();
+
+        Map<Long, SuggestionSource> loaded = new HashMap<>();
+        for (int from = 0; from < productCodes.size(); from += rebuildBatchSize) {
+            List<Long> chunk = productCodes.subList(from, Math.min(from + rebuildBatchSize, productCodes.size()));
+            productRepository.findSuggestionSourcesByIds(chunk)
+                    .forEach(source -> loaded.put(source.productCode(), source));
+        }
+
+        // Estado anterior de cada sugestão afetada (null = não existia)
+        Map<String, Suggestion> before = new LinkedHashMap<>();
+        for (Long productCode : productCodes) {
+            rememberBefore(before, sources.get(productCode));
+            rememberBefore(before, loaded.get(productCode));
+        }
+
+        for (Long productCode : productCodes) {
+            SuggestionSource previous = sources.remove(productCode);
+            if (previous != null) {
+                contribute(aggregates, previous, -1);
+            }
+            SuggestionSource current = loaded.get(productCode);
+            if (current != null) {
+                sources.put(productCode, current);
+                contribute(aggregates, current, 1);
+            }
+        }
+
+        Node updated = root;
+        int changed = 0;
+        for (Map.Entry<String, Suggestion> entry : before.entrySet()) {
+            Aggregate after = aggregates.get(entry.getKey());
+            Suggestion replacement = after != null ? after.suggestion() : null;
+            if (replacement == entry.getValue()) {
+                continue;
+            }
+            String key = replacement != null ? replacement.key() : entry.getValue().key();
+            for (int startOfWord = 0; startOfWord < key.length(); startOfWord++) {
+                if (startOfWord == 0 || key.charAt(startOfWord - 1) == ' ') {
+                    updated = update(updated, key, startOfWord, entry.getKey(), replacement);
+                }
+            }
+            changed++;
+        }
+        root = updated;
+        logger.debug("Autocompletar atualizado: {} produtos, {} sugestões alteradas em {} ms",
+                productCodes.size(), changed, System.currentTimeMillis() - start);
+    }
+
+    private void rememberBefore(Map<String, Suggestion> before, SuggestionSource source) {
+        if (source == null) {
+            return;
+        }
+        for (String id : new String[]{suggestionId(source.name(), KIND_NAME), suggestionId(source.productType(), KIND_TYPE)}) {
+            if (id != null && !before.containsKey(id)) {
+                Aggregate existing = aggregates.get(id);
+                before.put(id, existing != null ? existing.suggestion() : null);
+            }
+        }
+    }
+
+    private static void contribute(Map<String, Aggregate> aggregates, SuggestionSource source, int sign) {
+        int stock = source.availableStock() != null ? source.availableStock() : 0;
+        contribute(aggregates, source.name(), KIND_NAME, sign * stock, sign);
+        contribute(aggregates, source.productType(), KIND_TYPE, sign * stock, sign);
+    }
+
+    private static void contribute(Map<String, Aggregate> aggregates, String text, String kind, int stock, int products) {
+        String id = suggestionId(text, kind);
+        if (id == null) {
+            return;
+        }
+        Aggregate existing = aggregates.get(id);
+        if (existing == null) {
+            if (products > 0) {
+                aggregates.put(id, new Aggregate(new Suggestion(id, normalize(text), text.trim(), kind, stock), products));
+            }
+            return;
+        }
+        int remaining = existing.products() + products;
+        if (remaining <= 0) {
+            aggregates.remove(id);
+        } else {
+            Suggestion suggestion = existing.suggestion();
+            aggregates.put(id, new Aggregate(new Suggestion(id, suggestion.key(), suggestion.text(), kind,
+                    suggestion.availableStock() + stock), remaining));
+        }
+    }
+
+    private static String suggestionId(String text, String kind) {
+        return text == null || text.isBlank() ? null : kind + ":" + normalize(text);
+    }
+
+    // Copia os nós do caminho, troca a sugestão no nó final e recalcula as N melhores de cada nó copiado
+    private Node update(Node node, String key, int position, String id, Suggestion replacement) {
+        char[] labels = node.labels();
+        Node[] children = node.children();
+        Suggestion[] terminals = node.terminals();
+
+        if (position == key.length()) {
+            List<Suggestion> remaining = new ArrayList<>(terminals.length + 1);
+            for (Suggestion terminal : terminals) {
+                if (!terminal.id().equals(id)) {
+                    remaining.add(terminal);
+                }
+            }
+            if (replacement != null) {
+                remaining.add(replacement);
+            }
+            terminals = remaining.toArray(Suggestion[]::new);
+        } else {
+            char label = key.charAt(position);
+            int index = Arrays.binarySearch(labels, label);
+            Node child = update(index >= 0 ? children[index] : Node.EMPTY, key, position + 1, id, replacement);
+            if (index >= 0 && child.isEmpty()) {
+                labels = removeAt(labels, index);
+                children = removeAt(children, index);
+            } else if (index >= 0) {
+                children = children.clone();
+                children[index] = child;
+            } else if (!child.isEmpty()) {
+                int insertAt = -index - 1;
+                labels = insertAt(labels, insertAt, label);
+                children = insertAt(children, insertAt, child);
+            }
+        }
+        return new Node(labels, children, terminals, top(children, terminals));
+    }
+
+    // As N melhores da subárvore estão entre as sugestões do próprio nó e as N melhores de cada filho
+    private Suggestion[] top(Node[] children, Suggestion[] terminals) {
+        List<Suggestion> candidates = new ArrayList<>(Arrays.asList(terminals));
+        for (Node child : children) {
+            candidates.addAll(Arrays.asList(child.top()));
+        }
+        candidates.sort(RANKING);
+
+        Map<String, Suggestion> top = new LinkedHashMap<>();
+        for (Suggestion candidate : candidates) {
+            if (top.size() == topN) {
+                break;
+            }
+            top.putIfAbsent(candidate.id(), candidate);
+        }
+        return top.values().toArray(Suggestion[]::new);
+    }
+
+    private void insert(NodeBuilder root, String key, int from, Suggestion suggestion) {
+        NodeBuilder node = root;
+        addTop(node, suggestion);
+        for (int i = from; i < key.length(); i++) {
+            node = node.children.computeIfAbsent(key.charAt(i), c -> new NodeBuilder());
+            addTop(node, suggestion);
+        }
+        node.terminals.add(suggestion);
+    }
+
+    private void addTop(NodeBuilder node, Suggestion suggestion) {
+        // A mesma sugestão chega ao nó por mais de uma palavra ("azul azul"); as inserções são consecutivas
+        List<Suggestion> top = node.top;
+        if (top.size() < topN && (top.isEmpty() || top.get(top.size() - 1) != suggestion)) {
+            top.add(suggestion);
+        }
+    }
+
+    private Node freeze(NodeBuilder builder) {
+        char[] labels = new char[builder.children.size()];
+        Node[] children = new Node[builder.children.size()];
+        int i = 0;
+        for (Map.Entry<Character, NodeBuilder> entry : builder.children.entrySet()) {
+            labels[i] = entry.getKey();
+            children[i] = freeze(entry.getValue());
+            i++;
+        }
+        return new Node(labels, children, builder.terminals.toArray(Suggestion[]::new),
+                builder.top.toArray(Suggestion[]::new));
+    }
+
+    private static char[] removeAt(char[] array, int index) {
+        char[] result = new char[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static Node[] removeAt(Node[] array, int index) {
+        Node[] result = new Node[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static char[] insertAt(char[] array, int index, char value) {
+        char[] result = new char[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Node[] insertAt(Node[] array, int index, Node value) {
+        Node[] result = new Node[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    // Mesma normalização do índice de busca, com espaços simples entre as palavras
+    private static String normalize(String text) {
+        return ProductSearchIndex.fold(text).trim().replaceAll("\\s+", " ");
+    }
+}
@@ -0,0 +1,7 @@
+package com.java_avanade.spring_app.search;
+
+/**
+ * Nome, tipo e estoque total de um produto, usados para montar o índice de autocompletar.
+ */
+public record SuggestionSource(Long productCode, String name, String productType, Integer availableStock) {
+}
@@ -1,13 +1,19 @@
 package com.java_avanade.spring_app.services;
 
+import com.java_avanade.spring_app.cache.ProductCache;
 import com.java_avanade.spring_app.dtos.AffiliateDTO;
+import com.java_avanade.spring_app.dtos.CursorPageDTO;
+import com.java_avanade.spring_app.dtos.ProductDTO;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
 import com.java_avanade.spring_app.models.Affiliate;
 import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.repositories.AffiliateRepository;
-import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import com.java_avanade.spring_app.search.ProductSearchIndex;
+import com.java_avanade.spring_app.search.ProductSuggester;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -19,14 +25,34 @@ public class AffiliateService {
     private AffiliateRepository affiliateRepository;
 
     @Autowired
-    private ProductRepository productRepository;
+    private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private UserIdentityService userIdentityService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private ProductSuggester productSuggester;
+
+    @Transactional(readOnly = true)
     public List<AffiliateDTO> getAllAffiliates() {
         return affiliateRepository.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public AffiliateDTO getAffiliateById(Long id) {
         Affiliate affiliate = affiliateRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Afiliado", "id", id));
@@ -34,6 +60,7 @@ public class AffiliateService {
     }
 
     // Método atualizado para usar adminId em vez de userId
+    @Transactional(readOnly = true)
     public AffiliateDTO getAffiliateByUserId(Long userId) {
         // Na nova estrutura, usamos adminId em vez de userId
         List<Affiliate> affiliates = affiliateRepository.findByAdminId(userId);
@@ -43,6 +70,7 @@ public class AffiliateService {
         return convertToDTO(affiliates.get(0));
     }
 
+    @Transactional
     public AffiliateDTO updateAffiliate(Long id, Affiliate affiliateDetails) {
         Affiliate affiliate = affiliateRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Afiliado", "id", id));
@@ -53,21 +81,37 @@ public class AffiliateService {
         }
 
         Affiliate updatedAffiliate = affiliateRepository.save(affiliate);
+        userIdentityService.update("AFFILIATE", updatedAffiliate.getId(), updatedAffiliate.getUsername(), updatedAffiliate.getEmail());
+        customUserDetailsService.evictPrincipal(updatedAffiliate.getUsername());
+
         return convertToDTO(updatedAffiliate);
     }
 
+    @Transactional
     public void deleteAffiliate(Long id) {
         Affiliate affiliate = affiliateRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Afiliado", "id", id));
 
+        // Os produtos do afiliado são removidos em cascata; retira-os também do índice de busca
+        affiliate.getProducts().forEach(product -> {
+            productSearchIndex.removeAfterCommit(product.getProductCode());
+            productCache.invalidate(product.getProductCode());
+            productFacetIndex.markDirtyAfterCommit(product.getProductCode());
+            productSuggester.markDirtyAfterCommit(product.getProductCode());
+        });
+
         affiliateRepository.delete(affiliate);
+        userIdentityService.remove("AFFILIATE", affiliate.getId());
+        customUserDetailsService.revokeSessions(affiliate.getUsername());
     }
 
-    public List<Product> getAffiliateProducts(Long affiliateId) {
-        Affiliate affiliate = affiliateRepository.findById(affiliateId)
-                .orElseThrow(() -> new ResourceNotFoundException("Afiliado", "id", affiliateId));
-
-        return productRepository.findByAffiliateId(affiliate.getId());
+    // Projeção paginada (produto, preço, estoque): sem serializar entidades nem carregar relacionamentos
+    @Transactional(readOnly = true)
+    public CursorPageDTO<ProductDTO> getAffiliateProducts(Long affiliateId, String cursor, Integer limit) {
+        if (!affiliateRepository.existsById(affiliateId)) {
+            throw new ResourceNotFoundException("Afiliado", "id", affiliateId);
+        }
+        return productService.getAffiliateCatalogPage(affiliateId, cursor, limit);
     }
 
     public AffiliateDTO convertToDTO(Affiliate affiliate) {
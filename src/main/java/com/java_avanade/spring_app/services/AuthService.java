@@ -1,18 +1,23 @@
 package com.java_avanade.spring_app.services;
 
+import com.java_avanade.spring_app.config.jwt.JwtRevocationList;
 import com.java_avanade.spring_app.config.jwt.JwtTokenProvider;
 import com.java_avanade.spring_app.dtos.AuthDTO;
-import com.java_avanade.spring_app.exceptions.ResourceAlreadyExistsException;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
+import com.java_avanade.spring_app.exceptions.ServiceUnavailableException;
+import com.java_avanade.spring_app.exceptions.TooManyRequestsException;
 import com.java_avanade.spring_app.models.Affiliate;
 import com.java_avanade.spring_app.models.Client;
 import com.java_avanade.spring_app.models.User;
 import com.java_avanade.spring_app.repositories.AffiliateRepository;
 import com.java_avanade.spring_app.repositories.ClientRepository;
 import com.java_avanade.spring_app.repositories.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
@@ -24,6 +29,12 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service
 public class AuthService {
@@ -51,11 +62,27 @@ public class AuthService {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private UserIdentityService userIdentityService;
+
+    @Autowired
+    private JwtRevocationList jwtRevocationList;
+
+    @Autowired
+    @Qualifier("loginExecutor")
+    private ThreadPoolExecutor loginExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${security.login-executor.timeout-ms:10000}")
+    private long loginTimeoutMs;
+
     public AuthDTO.JwtResponse authenticateUser(AuthDTO.LoginRequest loginRequest) {
         logger.info("Tentativa de autenticação para o usuário: {}", loginRequest.getUsername());
 
         try {
-            Authentication authentication = authenticationManager.authenticate(
+            Authentication authentication = authenticateOnLoginExecutor(
                     new UsernamePasswordAuthenticationToken(loginRequest.getUsername(), loginRequest.getPassword())
             );
 
@@ -63,25 +90,11 @@ public class AuthService {
             UserDetails userDetails = (UserDetails) authentication.getPrincipal();
             String jwt = jwtTokenProvider.generateToken(userDetails);
 
-            // Obter informações adicionais do usuário
-            Long userId = customUserDetailsService.getRealUserIdByUsername(loginRequest.getUsername());
-            String userType = customUserDetailsService.getUserTypeByUsername(loginRequest.getUsername());
-            String email = "";
-
-            // Obter email com base no tipo de usuário
-            if ("ADMIN".equals(userType)) {
-                User user = userRepository.findByUsername(loginRequest.getUsername())
-                        .orElseThrow(() -> new ResourceNotFoundException("Admin", "username", loginRequest.getUsername()));
-                email = user.getEmail();
-            } else if ("CLIENT".equals(userType)) {
-                Client client = clientRepository.findByUsername(loginRequest.getUsername())
-                        .orElseThrow(() -> new ResourceNotFoundException("Cliente", "username", loginRequest.getUsername()));
-                email = client.getEmail();
-            } else if ("AFFILIATE".equals(userType)) {
-                Affiliate affiliate = affiliateRepository.findByUsername(loginRequest.getUsername())
-                        .orElseThrow(() -> new ResourceNotFoundException("Afiliado", "username", loginRequest.getUsername()));
-                email = affiliate.getEmail();
-            }
+            // Tipo, ID e email vêm do principal já resolvido (em cache) durante a autenticação
+            ResolvedPrincipal principal = customUserDetailsService.resolvePrincipal(loginRequest.getUsername());
+            Long userId = principal.getId();
+            String userType = principal.getUserType();
+            String email = principal.getEmail();
 
             logger.info("Usuário autenticado com sucesso: {}", loginRequest.getUsername());
 
@@ -98,27 +111,40 @@ public class AuthService {
         }
     }
 
-    @Transactional
-    public AuthDTO.RegisterResponse registerUser(AuthDTO.RegisterRequest registerRequest) {
-        logger.info("Iniciando registro de novo usuário: {}", registerRequest.getUsername());
-
-        // Verificar se o username já existe em qualquer entidade
-        if (userRepository.existsByUsername(registerRequest.getUsername()) ||
-                clientRepository.existsByUsername(registerRequest.getUsername()) ||
-                affiliateRepository.existsByUsername(registerRequest.getUsername())) {
+    // Executa a verificação BCrypt no executor dedicado; o excedente é recusado sem ocupar threads do Tomcat
+    private Authentication authenticateOnLoginExecutor(UsernamePasswordAuthenticationToken token) {
+        Future<Authentication> future;
+        try {
+            // O tempo do BCrypt é medido pelo PasswordEncoder (auth.login.hash), sem a busca do usuário
+            future = loginExecutor.submit(() -> authenticationManager.authenticate(token));
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter("auth.login.rejected").increment();
+            logger.warn("Fila de login cheia, tentativa recusada para o usuário: {}", token.getName());
+            throw new TooManyRequestsException("Muitas tentativas de login simultâneas. Tente novamente em instantes.");
+        }
 
-            logger.warn("Tentativa de registro com username já existente: {}", registerRequest.getUsername());
-            throw new ResourceAlreadyExistsException("Usuário", "username", registerRequest.getUsername());
+        try {
+            return future.get(loginTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new ServiceUnavailableException("Tempo esgotado ao verificar as credenciais. Tente novamente em instantes.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ServiceUnavailableException("Verificação de credenciais interrompida.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
         }
+    }
 
-        // Verificar se o email já existe em qualquer entidade
-        if (userRepository.existsByEmail(registerRequest.getEmail()) ||
-                clientRepository.existsByEmail(registerRequest.getEmail()) ||
-                affiliateRepository.existsByEmail(registerRequest.getEmail())) {
+    @Transactional
+    public AuthDTO.RegisterResponse registerUser(AuthDTO.RegisterRequest registerRequest) {
+        logger.info("Iniciando registro de novo usuário: {}", registerRequest.getUsername());
 
-            logger.warn("Tentativa de registro com email já existente: {}", registerRequest.getEmail());
-            throw new ResourceAlreadyExistsException("Usuário", "email", registerRequest.getEmail());
-        }
+        // Verificar username e email em uma única consulta ao registro de identidades
+        userIdentityService.assertAvailable(registerRequest.getUsername(), registerRequest.getEmail());
 
         try {
             // Obter o admin principal (ID 1)
@@ -142,6 +168,8 @@ public class AuthService {
                 affiliate.setRoles(roles);
 
                 Affiliate savedAffiliate = affiliateRepository.save(affiliate);
+                userIdentityService.register("AFFILIATE", savedAffiliate.getId(),
+                        savedAffiliate.getUsername(), savedAffiliate.getEmail());
                 logger.debug("Afiliado criado: {} com ID {}", savedAffiliate.getUsername(), savedAffiliate.getId());
 
                 logger.info("Afiliado registrado com sucesso: {}", affiliate.getUsername());
@@ -167,6 +195,8 @@ public class AuthService {
                 client.setRoles(roles);
 
                 Client savedClient = clientRepository.save(client);
+                userIdentityService.register("CLIENT", savedClient.getId(),
+                        savedClient.getUsername(), savedClient.getEmail());
                 logger.debug("Cliente criado: {} com ID {}", savedClient.getUsername(), savedClient.getId());
 
                 logger.info("Cliente registrado com sucesso: {}", client.getUsername());
@@ -184,4 +214,11 @@ public class AuthService {
             throw e;
         }
     }
-}
\ No newline at end of file
+
+    public void logout(String username) {
+        // Revoga todos os tokens emitidos até agora para o usuário
+        jwtRevocationList.revokeAll(username);
+        SecurityContextHolder.clearContext();
+        logger.info("Logout realizado para o usuário: {}", username);
+    }
+}
@@ -0,0 +1,32 @@
+package com.java_avanade.spring_app.services;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+/**
+ * Principal colocado no SecurityContext, carregando tipo, ID real e adminId do usuário
+ * para que as verificações de autorização não precisem consultar o banco.
+ */
+public class AuthenticatedPrincipal extends User {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String userType;
+    private final Long id;
+    private final Long adminId;
+
+    public AuthenticatedPrincipal(String username, String password, boolean enabled,
+                                  Collection<? extends GrantedAuthority> authorities,
+                                  String userType, Long id, Long adminId) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.userType = userType;
+        this.id = id;
+        this.adminId = adminId;
+    }
+
+    public String getUserType() { return userType; }
+    public Long getId() { return id; }
+    public Long getAdminId() { return adminId; }
+}
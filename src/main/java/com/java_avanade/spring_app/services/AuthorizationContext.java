@@ -0,0 +1,48 @@
+package com.java_avanade.spring_app.services;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Contexto de autorização com escopo de requisição.
+ * Memoriza o principal e os resultados das verificações de propriedade,
+ * para que várias expressões @PreAuthorize da mesma requisição não repitam consultas.
+ *
+ * Vale apenas entre as expressões de autorização: as verificações usam consultas de existência e
+ * não carregam entidades, e com open-in-view desligado o serviço chamado em seguida abre sua
+ * própria transação e lê o que precisa. Nada é compartilhado com a chamada ao serviço.
+ */
+@Component
+@RequestScope
+public class AuthorizationContext {
+
+    private AuthenticatedPrincipal principal;
+    private final Map<String, Boolean> facts = new HashMap<>();
+
+    // Fora de uma requisição HTTP (jobs, inicialização) não há contexto a reutilizar
+    public static boolean isActive() {
+        return RequestContextHolder.getRequestAttributes() != null;
+    }
+
+    public AuthenticatedPrincipal principal(Supplier<AuthenticatedPrincipal> resolver) {
+        if (principal == null) {
+            principal = resolver.get();
+        }
+        return principal;
+    }
+
+    public boolean fact(String key, BooleanSupplier check) {
+        Boolean known = facts.get(key);
+        if (known == null) {
+            known = check.getAsBoolean();
+            facts.put(key, known);
+        }
+        return known;
+    }
+}
@@ -0,0 +1,26 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.exceptions.BadRequestException;
+
+import java.util.List;
+
+/**
+ * Limite e validação comuns às consultas em lote por lista de IDs (produtos e estoque).
+ */
+final class BatchIds {
+
+    static final int MAX_IDS = 100;
+
+    private BatchIds() {
+    }
+
+    // "ids=1,,2" chega como um elemento null; rejeitado antes de qualquer consulta
+    static void validate(List<Long> ids) {
+        if (ids.size() > MAX_IDS) {
+            throw new BadRequestException("Máximo de " + MAX_IDS + " IDs por requisição");
+        }
+        if (ids.contains(null)) {
+            throw new BadRequestException("Lista de IDs contém valores vazios");
+        }
+    }
+}
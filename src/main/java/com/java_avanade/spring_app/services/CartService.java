@@ -3,6 +3,7 @@ package com.java_avanade.spring_app.services;
 import com.java_avanade.spring_app.dtos.CartDTO;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
 import com.java_avanade.spring_app.models.Cart;
+import com.java_avanade.spring_app.models.Money;
 import com.java_avanade.spring_app.models.Order;
 import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.repositories.CartRepository;
@@ -12,7 +13,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -29,26 +29,30 @@ public class CartService {
     private ProductRepository productRepository;
 
     @Autowired
-    private StockService stockService;
+    private StockHoldService stockHoldService;
 
+    @Transactional(readOnly = true)
     public List<CartDTO> getAllCartItems() {
         return cartRepository.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public CartDTO getCartItemById(Long id) {
         Cart cartItem = cartRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Item do carrinho", "id", id));
         return convertToDTO(cartItem);
     }
 
+    @Transactional(readOnly = true)
     public List<CartDTO> getCartItemsByOrderId(Long orderId) {
         return cartRepository.findByOrderId(orderId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<CartDTO> getCartItemsByClientId(Long clientId) {
         return cartRepository.findCartItemsByClientId(clientId).stream()
                 .map(this::convertToDTO)
@@ -63,19 +67,21 @@ public class CartService {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Produto", "id", productId));
 
-        // Verificar estoque
-        stockService.checkAndReduceStock(productId, quantity);
-
         Cart cartItem = new Cart();
         cartItem.setOrder(order);
         cartItem.setProduct(product);
+        cartItem.setUnitPrice(product.getPrice());
+        cartItem.setProductName(product.getName());
         cartItem.setQuantity(quantity);
         cartItem.setPaymentType(paymentType);
 
         Cart savedCartItem = cartRepository.save(cartItem);
 
-        // Atualizar o valor total do pedido
-        updateOrderTotal(order);
+        // Debitar o estoque com reserva temporária até o checkout
+        stockHoldService.holdNewCartItem(savedCartItem);
+
+        // Somar o novo item ao valor total do pedido
+        applyOrderTotalDelta(orderId, Money.lineTotal(product.getPrice(), quantity));
 
         return convertToDTO(savedCartItem);
     }
@@ -85,16 +91,11 @@ public class CartService {
         Cart cartItem = cartRepository.findById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Item do carrinho", "id", cartItemId));
 
-        // Se a quantidade vai aumentar, verificar estoque
-        if (newQuantity > cartItem.getQuantity()) {
-            int additionalQuantity = newQuantity - cartItem.getQuantity();
-            stockService.checkAndReduceStock(cartItem.getProduct().getProductCode(), additionalQuantity);
-        }
-        // Se a quantidade vai diminuir, retornar ao estoque
-        else if (newQuantity < cartItem.getQuantity()) {
-            int returnedQuantity = cartItem.getQuantity() - newQuantity;
-            stockService.addStock(cartItem.getProduct().getProductCode(), returnedQuantity);
-        }
+        // Ajustar a reserva de estoque à nova quantidade, renovando o prazo
+        stockHoldService.adjustCartItemHold(cartItem, newQuantity);
+
+        Money delta = Money.lineTotal(cartItem.getUnitPrice(), newQuantity)
+                .minus(Money.lineTotal(cartItem.getUnitPrice(), cartItem.getQuantity()));
 
         cartItem.setQuantity(newQuantity);
         if (paymentType != null && !paymentType.isEmpty()) {
@@ -103,8 +104,8 @@ public class CartService {
 
         Cart updatedCartItem = cartRepository.save(cartItem);
 
-        // Atualizar o valor total do pedido
-        updateOrderTotal(cartItem.getOrder());
+        // Aplicar ao valor total do pedido apenas a diferença do item
+        applyOrderTotalDelta(cartItem.getOrder().getOrderId(), delta);
 
         return convertToDTO(updatedCartItem);
     }
@@ -114,14 +115,15 @@ public class CartService {
         Cart cartItem = cartRepository.findById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("Item do carrinho", "id", cartItemId));
 
-        // Retornar a quantidade ao estoque
-        stockService.addStock(cartItem.getProduct().getProductCode(), cartItem.getQuantity());
+        // Retornar ao estoque a quantidade ainda reservada
+        stockHoldService.adjustCartItemHold(cartItem, 0);
 
         Order order = cartItem.getOrder();
+        Money lineTotal = Money.lineTotal(cartItem.getUnitPrice(), cartItem.getQuantity());
         cartRepository.delete(cartItem);
 
-        // Atualizar o valor total do pedido
-        updateOrderTotal(order);
+        // Subtrair o item do valor total do pedido
+        applyOrderTotalDelta(order.getOrderId(), lineTotal.negate());
     }
 
     public CartDTO convertToDTO(Cart cartItem) {
@@ -129,24 +131,20 @@ public class CartService {
         dto.setId(cartItem.getId());
         dto.setOrderId(cartItem.getOrder().getOrderId());
         dto.setProductId(cartItem.getProduct().getProductCode());
-        dto.setProductName(cartItem.getProduct().getName());
+        dto.setProductName(cartItem.getProductName());
         dto.setQuantity(cartItem.getQuantity());
-        dto.setUnitPrice(cartItem.getProduct().getPrice());
-        dto.setTotalPrice(cartItem.getProduct().getPrice().multiply(BigDecimal.valueOf(cartItem.getQuantity())));
+        dto.setUnitPrice(cartItem.getUnitPrice());
+        dto.setTotalPrice(Money.lineTotal(cartItem.getUnitPrice(), cartItem.getQuantity()).toBigDecimal());
         dto.setPaymentType(cartItem.getPaymentType());
         return dto;
     }
 
-    private void updateOrderTotal(Order order) {
-        BigDecimal total = BigDecimal.ZERO;
-
-        for (Cart cartItem : order.getCartItems()) {
-            BigDecimal itemTotal = cartItem.getProduct().getPrice()
-                    .multiply(BigDecimal.valueOf(cartItem.getQuantity()));
-            total = total.add(itemTotal);
+    // O total do pedido é mantido por variação: cada alteração de item soma a diferença da sua linha
+    // no mesmo UPDATE, na transação da alteração. O CheckoutService confere o total antes de finalizar.
+    public void applyOrderTotalDelta(Long orderId, Money delta) {
+        if (delta.isZero()) {
+            return;
         }
-
-        order.setTotalAmount(total);
-        orderRepository.save(order);
+        orderRepository.addToTotalAmount(orderId, delta.toBigDecimal());
     }
 }
\ No newline at end of file
@@ -1,57 +1,94 @@
 package com.java_avanade.spring_app.services;
 
 import com.java_avanade.spring_app.dtos.CheckoutDTO;
+import com.java_avanade.spring_app.dtos.OrderDTO;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
 import com.java_avanade.spring_app.models.Cart;
 import com.java_avanade.spring_app.models.Checkout;
+import com.java_avanade.spring_app.models.Client;
+import com.java_avanade.spring_app.models.Money;
 import com.java_avanade.spring_app.models.Order;
 import com.java_avanade.spring_app.models.Product;
+import com.java_avanade.spring_app.repositories.CartRepository;
 import com.java_avanade.spring_app.repositories.CheckoutRepository;
+import com.java_avanade.spring_app.repositories.ClientRepository;
 import com.java_avanade.spring_app.repositories.OrderRepository;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
 public class CheckoutService {
 
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutService.class);
+
     @Autowired
     private CheckoutRepository checkoutRepository;
 
+    @Autowired
+    private CartRepository cartRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Autowired
     private OrderRepository orderRepository;
 
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private StockHoldService stockHoldService;
+
+    @Autowired
+    private StockService stockService;
+
+    @Autowired
+    private ClientRepository clientRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Transactional(readOnly = true)
     public List<CheckoutDTO> getAllCheckouts() {
         return checkoutRepository.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public CheckoutDTO getCheckoutById(Long id) {
         Checkout checkout = checkoutRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Checkout", "id", id));
         return convertToDTO(checkout);
     }
 
+    @Transactional(readOnly = true)
     public CheckoutDTO getCheckoutByOrderId(Long orderId) {
         Checkout checkout = checkoutRepository.findByOrderId(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Checkout", "orderId", orderId));
         return convertToDTO(checkout);
     }
 
+    @Transactional(readOnly = true)
     public List<CheckoutDTO> getCheckoutsByClientId(Long clientId) {
         return checkoutRepository.findCheckoutsByClientId(clientId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public List<CheckoutDTO> getCheckoutsByAffiliateId(Long affiliateId) {
         return checkoutRepository.findCheckoutsByAffiliateId(affiliateId).stream()
                 .map(this::convertToDTO)
@@ -60,11 +97,11 @@ public class CheckoutService {
 
     @Transactional
     public CheckoutDTO processCheckout(CheckoutDTO.CheckoutRequest checkoutRequest) {
-        Order order = orderRepository.findById(checkoutRequest.getOrderId())
+        Order order = orderRepository.findViewByOrderId(checkoutRequest.getOrderId())
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido", "id", checkoutRequest.getOrderId()));
 
         // Verificar se o pedido já possui checkout
-        if (order.getCheckout() != null) {
+        if (checkoutRepository.existsByOrder_OrderId(order.getOrderId())) {
             throw new IllegalStateException("Este pedido já possui um checkout finalizado");
         }
 
@@ -73,6 +110,9 @@ public class CheckoutService {
             throw new IllegalStateException("O pedido deve estar aberto ou em processamento para finalizar o checkout");
         }
 
+        // Converter as reservas de estoque dos itens em venda
+        stockHoldService.commitCartItems(order.getCartItems());
+
         // Criar checkout
         Checkout checkout = new Checkout();
         checkout.setOrder(order);
@@ -96,7 +136,7 @@ public class CheckoutService {
             }
         }
 
-        checkout.setTotalPrice(order.getTotalAmount());
+        checkout.setTotalPrice(verifyOrderTotal(order).toBigDecimal());
         checkout.setPaymentStatus("PENDING");
         checkout.setShippingAddress(checkoutRequest.getShippingAddress());
 
@@ -108,6 +148,69 @@ public class CheckoutService {
         return convertToDTO(savedCheckout);
     }
 
+    // Pedido completo em uma única requisição: estoque, pedido, itens e checkout na mesma transação
+    @Transactional
+    public CheckoutDTO placeOrder(OrderDTO.PlaceOrderRequest request) {
+        Client client = clientRepository.findById(request.getClientId())
+                .orElseThrow(() -> new ResourceNotFoundException("Cliente", "id", request.getClientId()));
+
+        // Itens repetidos do mesmo produto viram uma única linha
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderDTO.PlaceOrderItem item : request.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+
+        Map<Long, Product> products = new HashMap<>();
+        productRepository.findAllById(quantities.keySet())
+                .forEach(product -> products.put(product.getProductCode(), product));
+        for (Long productId : quantities.keySet()) {
+            if (!products.containsKey(productId)) {
+                throw new ResourceNotFoundException("Produto", "id", productId);
+            }
+        }
+
+        // Debitar o estoque de todos os itens de uma vez; a falta de qualquer um desfaz o pedido inteiro.
+        // Sem reserva temporária: o checkout já é criado nesta mesma transação
+        stockService.checkAndReduceStockBatch(quantities);
+
+        Order order = new Order();
+        order.setClient(client);
+        order.setStatus("AWAITING_PAYMENT");
+
+        Money total = Money.ZERO;
+        int totalQuantity = 0;
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            Product product = products.get(entry.getKey());
+            Cart cartItem = new Cart();
+            cartItem.setOrder(order);
+            cartItem.setProduct(product);
+            cartItem.setUnitPrice(product.getPrice());
+            cartItem.setProductName(product.getName());
+            cartItem.setQuantity(entry.getValue());
+            cartItem.setPaymentType(request.getPaymentType());
+            order.getCartItems().add(cartItem);
+
+            total = total.plus(Money.lineTotal(product.getPrice(), entry.getValue()));
+            totalQuantity += entry.getValue();
+        }
+        order.setTotalAmount(total.toBigDecimal());
+
+        // Mesmo formato do checkout em etapas: primeiro produto do pedido e quantidade total
+        Checkout checkout = new Checkout();
+        checkout.setOrder(order);
+        checkout.setProduct(order.getCartItems().get(0).getProduct());
+        checkout.setQuantity(totalQuantity);
+        checkout.setTotalPrice(order.getTotalAmount());
+        checkout.setPaymentStatus("PENDING");
+        checkout.setShippingAddress(request.getShippingAddress());
+
+        // Itens gravados em cascata a partir do pedido; o checkout é o dono da chave order_id
+        orderRepository.saveAndFlush(order);
+        checkoutRepository.saveAndFlush(checkout);
+
+        return convertToDTO(checkout);
+    }
+
     @Transactional
     public CheckoutDTO updatePaymentStatus(Long checkoutId, String paymentStatus) {
         Checkout checkout = checkoutRepository.findById(checkoutId)
@@ -153,4 +256,18 @@ public class CheckoutService {
 
         return dto;
     }
+
+    // Confere o total mantido por variação contra a soma dos itens antes de cobrar o cliente
+    private Money verifyOrderTotal(Order order) {
+        BigDecimal lineTotals = cartRepository.sumLineTotalsByOrderId(order.getOrderId());
+        Money expected = lineTotals != null ? Money.of(lineTotals) : Money.ZERO;
+        Money stored = Money.of(order.getTotalAmount());
+        if (!expected.equals(stored)) {
+            logger.warn("Total divergente no pedido {}: total_amount = {}, soma dos itens = {}; valor corrigido",
+                    order.getOrderId(), stored, expected);
+            meterRegistry.counter("order.total.drift").increment();
+            order.setTotalAmount(expected.toBigDecimal());
+        }
+        return expected;
+    }
 }
\ No newline at end of file
@@ -7,8 +7,10 @@ import com.java_avanade.spring_app.models.Order;
 import com.java_avanade.spring_app.repositories.ClientRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -17,12 +19,20 @@ public class ClientService {
     @Autowired
     private ClientRepository clientRepository;
 
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private UserIdentityService userIdentityService;
+
+    @Transactional(readOnly = true)
     public List<ClientDTO> getAllClients() {
         return clientRepository.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public ClientDTO getClientById(Long id) {
         Client client = clientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cliente", "id", id));
@@ -30,6 +40,7 @@ public class ClientService {
     }
 
     // Método atualizado para usar adminId em vez de userId
+    @Transactional(readOnly = true)
     public ClientDTO getClientByAdminId(Long adminId) {
         List<Client> clients = clientRepository.findByAdminId(adminId);
         if (clients.isEmpty()) {
@@ -39,6 +50,7 @@ public class ClientService {
     }
 
     // Método atualizado para buscar por username
+    @Transactional(readOnly = true)
     public ClientDTO getClientByUsername(String username) {
         Client client = clientRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("Cliente", "username", username));
@@ -46,20 +58,25 @@ public class ClientService {
     }
 
     // Método mantido para compatibilidade, mas reimplementado para usar adminId
+    @Transactional(readOnly = true)
     public ClientDTO getClientByUserId(Long userId) {
         // Assumindo que userId agora se refere ao adminId
         return getClientByAdminId(userId);
     }
 
+    @Transactional(readOnly = true)
     public Client getClientEntityById(Long id) {
         return clientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cliente", "id", id));
     }
 
+    @Transactional
     public ClientDTO updateClient(Long id, Client clientDetails) {
         Client client = clientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cliente", "id", id));
 
+        String previousUsername = client.getUsername();
+        String previousPassword = client.getPassword();
         client.setName(clientDetails.getName());
         if (clientDetails.getEmail() != null && !clientDetails.getEmail().isEmpty()) {
             client.setEmail(clientDetails.getEmail());
@@ -75,14 +92,27 @@ public class ClientService {
         }
 
         Client updatedClient = clientRepository.save(client);
+        userIdentityService.update("CLIENT", updatedClient.getId(), updatedClient.getUsername(), updatedClient.getEmail());
+
+        // Invalidar o principal em cache; troca de username ou senha também revoga os tokens emitidos
+        if (!Objects.equals(previousUsername, updatedClient.getUsername())
+                || !Objects.equals(previousPassword, updatedClient.getPassword())) {
+            customUserDetailsService.revokeSessions(previousUsername);
+        }
+        customUserDetailsService.evictPrincipal(previousUsername);
+        customUserDetailsService.evictPrincipal(updatedClient.getUsername());
+
         return convertToDTO(updatedClient);
     }
 
+    @Transactional
     public void deleteClient(Long id) {
         Client client = clientRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Cliente", "id", id));
 
         clientRepository.delete(client);
+        userIdentityService.remove("CLIENT", client.getId());
+        customUserDetailsService.revokeSessions(client.getUsername());
     }
 
     public ClientDTO convertToDTO(Client client) {
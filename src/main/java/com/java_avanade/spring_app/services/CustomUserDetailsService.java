@@ -1,25 +1,30 @@
 package com.java_avanade.spring_app.services;
 
+import com.java_avanade.spring_app.cache.BoundedCache;
+import com.java_avanade.spring_app.config.jwt.JwtRevocationList;
 import com.java_avanade.spring_app.models.Affiliate;
 import com.java_avanade.spring_app.models.Client;
 import com.java_avanade.spring_app.models.User;
+import com.java_avanade.spring_app.models.UserIdentity;
 import com.java_avanade.spring_app.repositories.AffiliateRepository;
 import com.java_avanade.spring_app.repositories.ClientRepository;
 import com.java_avanade.spring_app.repositories.UserRepository;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-
-import java.util.Optional;
-import java.util.stream.Collectors;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
-public class CustomUserDetailsService implements UserDetailsService {
+public class CustomUserDetailsService implements UserDetailsService, UserDetailsPasswordService {
 
     private static final Logger logger = LoggerFactory.getLogger(CustomUserDetailsService.class);
 
@@ -32,94 +37,156 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private AffiliateRepository affiliateRepository;
 
+    @Autowired
+    private UserIdentityService userIdentityService;
+
+    @Autowired
+    private JwtRevocationList jwtRevocationList;
+
+    @Value("${security.principal-cache.max-size:10000}")
+    private int principalCacheMaxSize;
+
+    @Value("${security.principal-cache.ttl-ms:300000}")
+    private long principalCacheTtlMs;
+
+    // Cache compartilhado por filtro JWT, SecurityService e AuthService (username -> principal resolvido)
+    private BoundedCache<String, ResolvedPrincipal> principalCache;
+
+    @PostConstruct
+    public void initPrincipalCache() {
+        principalCache = new BoundedCache<>(principalCacheMaxSize);
+        logger.debug("Cache de principais inicializado com tamanho máximo {} e TTL de {} ms",
+                principalCacheMaxSize, principalCacheTtlMs);
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        logger.debug("Buscando usuário pelo username: {}", username);
+        return resolvePrincipal(username).toUserDetails();
+    }
 
-        // Primeiro verifica se é o admin (User)
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isPresent()) {
-            User user = userOptional.get();
-            logger.debug("Usuário admin encontrado: {} com ID {}", user.getUsername(), user.getId());
-            return user; // User já implementa UserDetails
+    // Chamado pelo DaoAuthenticationProvider após um login bem-sucedido quando o hash gravado usa custo abaixo do configurado
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        String username = user.getUsername();
+        UserIdentity identity = userIdentityService.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("Usuário não encontrado com username: " + username));
+
+        switch (identity.getUserType()) {
+            case "ADMIN" -> userRepository.findById(identity.getEntityId()).ifPresent(admin -> {
+                admin.setPassword(newPassword);
+                userRepository.save(admin);
+            });
+            case "CLIENT" -> clientRepository.findById(identity.getEntityId()).ifPresent(client -> {
+                client.setPassword(newPassword);
+                clientRepository.save(client);
+            });
+            case "AFFILIATE" -> affiliateRepository.findById(identity.getEntityId()).ifPresent(affiliate -> {
+                affiliate.setPassword(newPassword);
+                affiliateRepository.save(affiliate);
+            });
+            default -> throw missingEntity(identity);
         }
 
-        // Verifica se é um cliente
-        Optional<Client> clientOptional = clientRepository.findByUsername(username);
-        if (clientOptional.isPresent()) {
-            Client client = clientOptional.get();
-            logger.debug("Cliente encontrado: {} com ID {}", client.getUsername(), client.getId());
-
-            // Criar um UserDetails para o cliente
-            return new org.springframework.security.core.userdetails.User(
-                    client.getUsername(),
-                    client.getPassword(),
-                    client.getRoles().stream()
-                            .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                            .collect(Collectors.toList())
-            );
-        }
+        // A senha não mudou, apenas o hash: os tokens emitidos continuam válidos
+        evictPrincipal(username);
+        logger.info("Hash de senha atualizado para o custo configurado: {}", username);
 
-        // Verifica se é um afiliado
-        Optional<Affiliate> affiliateOptional = affiliateRepository.findByUsername(username);
-        if (affiliateOptional.isPresent()) {
-            Affiliate affiliate = affiliateOptional.get();
-            logger.debug("Afiliado encontrado: {} com ID {}", affiliate.getUsername(), affiliate.getId());
-
-            // Criar um UserDetails para o afiliado
-            return new org.springframework.security.core.userdetails.User(
-                    affiliate.getUsername(),
-                    affiliate.getPassword(),
-                    affiliate.getRoles().stream()
-                            .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
-                            .collect(Collectors.toList())
-            );
+        if (user instanceof AuthenticatedPrincipal principal) {
+            return new AuthenticatedPrincipal(username, newPassword, principal.isEnabled(), principal.getAuthorities(),
+                    principal.getUserType(), principal.getId(), principal.getAdminId());
         }
-
-        logger.warn("Usuário não encontrado com o username: {}", username);
-        throw new UsernameNotFoundException("Usuário não encontrado com username: " + username);
+        return org.springframework.security.core.userdetails.User.withUserDetails(user).password(newPassword).build();
     }
 
-    // Método adicional para obter o ID real da entidade pelo username
-    public Long getRealUserIdByUsername(String username) {
-        // Verifica nos admins (User)
-        Optional<User> userOptional = userRepository.findByUsername(username);
-        if (userOptional.isPresent()) {
-            return userOptional.get().getId();
+    // Resolve o principal pelo cache, consultando as tabelas apenas em caso de ausência ou expiração
+    public ResolvedPrincipal resolvePrincipal(String username) {
+        ResolvedPrincipal cached = principalCache.get(username);
+        if (cached != null) {
+            logger.debug("Principal encontrado no cache: {}", username);
+            return cached;
         }
 
-        // Verifica nos clientes
-        Optional<Client> clientOptional = clientRepository.findByUsername(username);
-        if (clientOptional.isPresent()) {
-            return clientOptional.get().getId();
+        ResolvedPrincipal principal = loadPrincipal(username);
+        principalCache.put(username, principal, System.currentTimeMillis() + principalCacheTtlMs);
+        return principal;
+    }
+
+    // Remove o principal do cache; deve ser chamado sempre que dados de autenticação do usuário mudarem
+    public void evictPrincipal(String username) {
+        if (username != null) {
+            principalCache.invalidate(username);
+            logger.debug("Principal removido do cache: {}", username);
+
+            // Dentro de uma transação, remove de novo após o commit para descartar leituras concorrentes do estado antigo
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        principalCache.invalidate(username);
+                    }
+                });
+            }
         }
+    }
 
-        // Verifica nos afiliados
-        Optional<Affiliate> affiliateOptional = affiliateRepository.findByUsername(username);
-        if (affiliateOptional.isPresent()) {
-            return affiliateOptional.get().getId();
+    // Invalida o principal em cache e revoga os tokens já emitidos (troca de credenciais, papéis ou exclusão)
+    public void revokeSessions(String username) {
+        if (username != null) {
+            evictPrincipal(username);
+            jwtRevocationList.revokeAll(username);
         }
+    }
 
-        throw new UsernameNotFoundException("Usuário não encontrado com username: " + username);
+    // Método adicional para obter o ID real da entidade pelo username
+    public Long getRealUserIdByUsername(String username) {
+        return resolvePrincipal(username).getId();
     }
 
     // Método para obter o tipo de usuário pelo username
     public String getUserTypeByUsername(String username) {
-        // Verifica nos admins (User)
-        if (userRepository.existsByUsername(username)) {
-            return "ADMIN";
-        }
+        return resolvePrincipal(username).getUserType();
+    }
 
-        // Verifica nos clientes
-        if (clientRepository.existsByUsername(username)) {
-            return "CLIENT";
-        }
+    // Resolve o tipo e o ID pelo registro de identidades e carrega apenas a entidade correspondente
+    private ResolvedPrincipal loadPrincipal(String username) {
+        logger.debug("Buscando usuário pelo username: {}", username);
 
-        // Verifica nos afiliados
-        if (affiliateRepository.existsByUsername(username)) {
-            return "AFFILIATE";
-        }
+        UserIdentity identity = userIdentityService.findByUsername(username)
+                .orElseThrow(() -> {
+                    logger.warn("Usuário não encontrado com o username: {}", username);
+                    return new UsernameNotFoundException("Usuário não encontrado com username: " + username);
+                });
+
+        return switch (identity.getUserType()) {
+            case "ADMIN" -> {
+                User user = userRepository.findById(identity.getEntityId())
+                        .orElseThrow(() -> missingEntity(identity));
+                logger.debug("Usuário admin encontrado: {} com ID {}", user.getUsername(), user.getId());
+                yield new ResolvedPrincipal(user.getUsername(), "ADMIN", user.getId(), null, user.getEmail(),
+                        user.getPassword(), user.getRoles(), user.isEnabled());
+            }
+            case "CLIENT" -> {
+                Client client = clientRepository.findById(identity.getEntityId())
+                        .orElseThrow(() -> missingEntity(identity));
+                logger.debug("Cliente encontrado: {} com ID {}", client.getUsername(), client.getId());
+                yield new ResolvedPrincipal(client.getUsername(), "CLIENT", client.getId(), client.getAdminId(),
+                        client.getEmail(), client.getPassword(), client.getRoles(), true);
+            }
+            case "AFFILIATE" -> {
+                Affiliate affiliate = affiliateRepository.findById(identity.getEntityId())
+                        .orElseThrow(() -> missingEntity(identity));
+                logger.debug("Afiliado encontrado: {} com ID {}", affiliate.getUsername(), affiliate.getId());
+                yield new ResolvedPrincipal(affiliate.getUsername(), "AFFILIATE", affiliate.getId(), affiliate.getAdminId(),
+                        affiliate.getEmail(), affiliate.getPassword(), affiliate.getRoles(), true);
+            }
+            default -> throw missingEntity(identity);
+        };
+    }
 
-        throw new UsernameNotFoundException("Usuário não encontrado com username: " + username);
+    private UsernameNotFoundException missingEntity(UserIdentity identity) {
+        logger.error("Registro de identidade inconsistente para {}: {} ID {}",
+                identity.getUsername(), identity.getUserType(), identity.getEntityId());
+        return new UsernameNotFoundException("Usuário não encontrado com username: " + identity.getUsername());
     }
-}
\ No newline at end of file
+}
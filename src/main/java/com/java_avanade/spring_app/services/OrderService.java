@@ -5,9 +5,11 @@ import com.java_avanade.spring_app.dtos.OrderDTO;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
 import com.java_avanade.spring_app.models.Cart;
 import com.java_avanade.spring_app.models.Client;
+import com.java_avanade.spring_app.models.Money;
 import com.java_avanade.spring_app.models.Order;
 import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.repositories.CartRepository;
+import com.java_avanade.spring_app.repositories.CheckoutRepository;
 import com.java_avanade.spring_app.repositories.ClientRepository;
 import com.java_avanade.spring_app.repositories.OrderRepository;
 import com.java_avanade.spring_app.repositories.ProductRepository;
@@ -16,8 +18,10 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -36,44 +40,45 @@ public class OrderService {
     private CartRepository cartRepository;
 
     @Autowired
-    private StockService stockService;
+    private CheckoutRepository checkoutRepository;
+
+    @Autowired
+    private StockHoldService stockHoldService;
 
     @Autowired
     private CartService cartService;
 
+    @Transactional(readOnly = true)
     public List<OrderDTO> getAllOrders() {
-        return orderRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(orderRepository.findAll());
     }
 
+    @Transactional(readOnly = true)
     public OrderDTO getOrderById(Long id) {
-        Order order = orderRepository.findById(id)
+        Order order = orderRepository.findViewByOrderId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido", "id", id));
         return convertToDTO(order);
     }
 
+    @Transactional(readOnly = true)
     public Order getOrderEntityById(Long id) {
-        return orderRepository.findById(id)
+        return orderRepository.findViewByOrderId(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido", "id", id));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderDTO> getOrdersByClientId(Long clientId) {
-        return orderRepository.findByClientId(clientId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(orderRepository.findByClientId(clientId));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderDTO> getOrdersByClientIdAndStatus(Long clientId, String status) {
-        return orderRepository.findOrderListByClientIdAndStatus(clientId, status).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(orderRepository.findOrderListByClientIdAndStatus(clientId, status));
     }
 
+    @Transactional(readOnly = true)
     public List<OrderDTO> getOrdersByAffiliateId(Long affiliateId) {
-        return orderRepository.findOrdersByAffiliateId(affiliateId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return convertToDTOs(orderRepository.findOrdersByAffiliateId(affiliateId));
     }
 
     @Transactional
@@ -110,26 +115,31 @@ public class OrderService {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Produto", "id", productId));
 
-        // Verificar e reduzir o estoque
-        stockService.checkAndReduceStock(productId, quantity);
-
         // Adicionar produto ao carrinho
         Cart cartItem = new Cart();
         cartItem.setOrder(order);
         cartItem.setProduct(product);
+        cartItem.setUnitPrice(product.getPrice());
+        cartItem.setProductName(product.getName());
         cartItem.setQuantity(quantity);
         cartItem.setPaymentType(paymentType);
-        cartRepository.save(cartItem);
+        Cart savedCartItem = cartRepository.save(cartItem);
 
-        // Atualizar valor total do pedido
-        updateOrderTotal(order);
+        // Debitar o estoque com reserva temporária até o checkout
+        stockHoldService.holdNewCartItem(savedCartItem);
 
-        return convertToDTO(order);
+        // Somar o novo item ao valor total do pedido
+        cartService.applyOrderTotalDelta(orderId, Money.lineTotal(product.getPrice(), quantity));
+
+        // O total foi alterado direto no banco; a entidade em memória ainda tem o valor anterior
+        OrderDTO dto = convertToDTO(order);
+        orderRepository.findTotalAmountById(orderId).ifPresent(dto::setTotalAmount);
+        return dto;
     }
 
     @Transactional
     public OrderDTO updateOrderStatus(Long orderId, String newStatus) {
-        Order order = orderRepository.findById(orderId)
+        Order order = orderRepository.findViewByOrderId(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido", "id", orderId));
 
         order.setStatus(newStatus);
@@ -143,7 +153,11 @@ public class OrderService {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResourceNotFoundException("Pedido", "id", orderId));
 
-        // Remover todos os itens do carrinho associados a este pedido
+        // Devolver ao estoque o que ainda está reservado para os itens do pedido
+        stockHoldService.releaseOrderHolds(orderId);
+
+        // Remover o checkout e todos os itens do carrinho associados a este pedido
+        checkoutRepository.deleteByOrderId(orderId);
         cartRepository.deleteByOrderId(orderId);
 
         // Remover o pedido
@@ -151,6 +165,22 @@ public class OrderService {
     }
 
     public OrderDTO convertToDTO(Order order) {
+        return convertToDTO(order, checkoutRepository.existsByOrder_OrderId(order.getOrderId()));
+    }
+
+    // Listagens: um único SELECT descobre quais pedidos da página já possuem checkout
+    private List<OrderDTO> convertToDTOs(List<Order> orders) {
+        if (orders.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<Long> withCheckout = checkoutRepository.findOrderIdsWithCheckout(
+                orders.stream().map(Order::getOrderId).toList());
+        return orders.stream()
+                .map(order -> convertToDTO(order, withCheckout.contains(order.getOrderId())))
+                .collect(Collectors.toList());
+    }
+
+    private OrderDTO convertToDTO(Order order, boolean hasCheckout) {
         OrderDTO dto = new OrderDTO();
         dto.setOrderId(order.getOrderId());
         dto.setOrderDate(order.getOrderDate());
@@ -169,22 +199,8 @@ public class OrderService {
                 .collect(Collectors.toList());
         dto.setCartItems(cartItems);
 
-        // Verificar se existe checkout
-        dto.setHasCheckout(order.getCheckout() != null);
+        dto.setHasCheckout(hasCheckout);
 
         return dto;
     }
-
-    private void updateOrderTotal(Order order) {
-        BigDecimal total = BigDecimal.ZERO;
-
-        for (Cart cartItem : order.getCartItems()) {
-            BigDecimal itemTotal = cartItem.getProduct().getPrice()
-                    .multiply(BigDecimal.valueOf(cartItem.getQuantity()));
-            total = total.add(itemTotal);
-        }
-
-        order.setTotalAmount(total);
-        orderRepository.save(order);
-    }
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+package com.java_avanade.spring_app.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.java_avanade.spring_app.dtos.ProductImportDTO.Result;
+import com.java_avanade.spring_app.dtos.ProductImportDTO.Row;
+import com.java_avanade.spring_app.dtos.ProductImportDTO.RowError;
+import com.java_avanade.spring_app.exceptions.BadRequestException;
+import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
+import com.java_avanade.spring_app.models.Affiliate;
+import com.java_avanade.spring_app.models.Product;
+import com.java_avanade.spring_app.models.Stock;
+import com.java_avanade.spring_app.repositories.AffiliateRepository;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.repositories.StockRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import com.java_avanade.spring_app.search.ProductSearchIndex;
+import com.java_avanade.spring_app.search.ProductSuggester;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Importação de produtos em lote para um afiliado, a partir de CSV (com cabeçalho) ou NDJSON.
+ *
+ * O arquivo é lido linha a linha, sem carregar o conteúdo inteiro em memória. Linhas válidas são
+ * acumuladas em lotes; cada lote é gravado em uma transação própria, com flush e clear do contexto
+ * de persistência a cada hibernate.jdbc.batch_size produtos para que os INSERTs de produtos e
+ * estoques saiam em batches JDBC. Linhas inválidas e lotes que falharem são reportados por linha.
+ */
+@Service
+public class ProductImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductImportService.class);
+
+    public static final String CONTENT_TYPE_CSV = "text/csv";
+    public static final String CONTENT_TYPE_NDJSON = "application/x-ndjson";
+
+    private static final List<String> REQUIRED_CSV_COLUMNS = List.of(
+            "name", "description", "price", "producttype", "productchoice");
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private AffiliateRepository affiliateRepository;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductSuggester productSuggester;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${product.import.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    @Value("${product.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private record PendingRow(long line, Row row) {
+    }
+
+    public ProductImportService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public Result importProducts(Long affiliateId, InputStream input, String contentType) throws IOException {
+        if (!affiliateRepository.existsById(affiliateId)) {
+            throw new ResourceNotFoundException("Afiliado", "id", affiliateId);
+        }
+        boolean csv = contentType != null && contentType.toLowerCase(Locale.ROOT).startsWith(CONTENT_TYPE_CSV);
+
+        Result result = new Result();
+        List<PendingRow> chunk = new ArrayList<>(chunkSize);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        Map<String, Integer> header = null;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            if (csv && header == null) {
+                header = parseHeader(line);
+                continue;
+            }
+
+            result.setProcessed(result.getProcessed() + 1);
+            Row row;
+            try {
+                row = csv ? parseCsvRow(header, line) : objectMapper.readValue(line, Row.class);
+            } catch (IllegalArgumentException | JsonProcessingException e) {
+                reportError(result, lineNumber, "Linha malformada: " + e.getMessage());
+                continue;
+            }
+
+            Set<ConstraintViolation<Row>> violations = validator.validate(row);
+            if (!violations.isEmpty()) {
+                reportError(result, lineNumber, violations.stream()
+                        .map(ConstraintViolation::getMessage)
+                        .sorted()
+                        .collect(Collectors.joining("; ")));
+                continue;
+            }
+
+            chunk.add(new PendingRow(lineNumber, row));
+            if (chunk.size() == chunkSize) {
+                writeChunk(affiliateId, chunk, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeChunk(affiliateId, chunk, result);
+        }
+
+        logger.info("Importação para o afiliado {}: {} linhas processadas, {} produtos importados, {} falhas",
+                affiliateId, result.getProcessed(), result.getImported(), result.getFailed());
+        return result;
+    }
+
+    // Cada lote em sua própria transação: se o lote falhar, as linhas são regravadas uma a uma para
+    // que apenas as linhas com problema sejam reportadas, cada uma com o seu próprio erro
+    private void writeChunk(Long affiliateId, List<PendingRow> chunk, Result result) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistChunk(affiliateId, chunk));
+            result.setImported(result.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            logger.warn("Falha ao gravar o lote de importação das linhas {} a {}; gravando linha a linha",
+                    chunk.get(0).line(), chunk.get(chunk.size() - 1).line(), e);
+            entityManager.clear();
+            for (PendingRow pending : chunk) {
+                writeRow(affiliateId, pending, result);
+            }
+        }
+    }
+
+    private void writeRow(Long affiliateId, PendingRow pending, Result result) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> persistChunk(affiliateId, List.of(pending)));
+            result.setImported(result.getImported() + 1);
+        } catch (RuntimeException e) {
+            logger.error("Falha ao gravar a linha {} da importação", pending.line(), e);
+            entityManager.clear();
+            reportError(result, pending.line(), "Linha não gravada: "
+                    + NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+        }
+    }
+
+    private void persistChunk(Long affiliateId, List<PendingRow> chunk) {
+        Affiliate affiliate = affiliateRepository.getReferenceById(affiliateId);
+        int pendingInBatch = 0;
+
+        for (PendingRow pending : chunk) {
+            Row row = pending.row();
+            Product product = new Product();
+            product.setName(row.getName().trim());
+            product.setDescription(row.getDescription().trim());
+            product.setPrice(row.getPrice());
+            product.setProductType(row.getProductType().trim());
+            product.setProductChoice(row.getProductChoice().trim());
+            product.setImageUrl(row.getImageUrl());
+            product.setAffiliate(affiliate);
+            product.setAvailableStock(row.getInitialStock() != null ? row.getInitialStock() : 0);
+            productRepository.save(product);
+
+            if (row.getInitialStock() != null && row.getInitialStock() > 0) {
+                Stock stock = new Stock();
+                stock.setProduct(product);
+                stock.setQuantity(row.getInitialStock());
+                stockRepository.save(stock);
+            }
+
+            productSearchIndex.indexAfterCommit(product);
+            productFacetIndex.markDirtyAfterCommit(product.getProductCode());
+            productSuggester.markDirtyAfterCommit(product.getProductCode());
+
+            // Envia o batch JDBC e libera as entidades já gravadas do contexto de persistência
+            if (++pendingInBatch == batchSize) {
+                entityManager.flush();
+                entityManager.clear();
+                affiliate = affiliateRepository.getReferenceById(affiliateId);
+                pendingInBatch = 0;
+            }
+        }
+    }
+
+    private Map<String, Integer> parseHeader(String line) {
+        List<String> columns;
+        try {
+            columns = parseCsvLine(line);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cabeçalho do CSV malformado: " + e.getMessage(), e);
+        }
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            header.put(columns.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> missing = REQUIRED_CSV_COLUMNS.stream().filter(c -> !header.containsKey(c)).toList();
+        if (!missing.isEmpty()) {
+            throw new BadRequestException("Cabeçalho do CSV sem as colunas obrigatórias: " + missing);
+        }
+        return header;
+    }
+
+    private Row parseCsvRow(Map<String, Integer> header, String line) {
+        List<String> values = parseCsvLine(line);
+        Row row = new Row();
+        row.setName(column(header, values, "name"));
+        row.setDescription(column(header, values, "description"));
+        String price = column(header, values, "price");
+        row.setPrice(price != null ? new BigDecimal(price.trim()) : null);
+        row.setProductType(column(header, values, "producttype"));
+        row.setProductChoice(column(header, values, "productchoice"));
+        row.setImageUrl(column(header, values, "imageurl"));
+        String initialStock = column(header, values, "initialstock");
+        row.setInitialStock(initialStock != null ? Integer.valueOf(initialStock.trim()) : null);
+        return row;
+    }
+
+    private String column(Map<String, Integer> header, List<String> values, String name) {
+        Integer index = header.get(name);
+        if (index == null || index >= values.size() || values.get(index).isBlank()) {
+            return null;
+        }
+        return values.get(index);
+    }
+
+    // CSV separado por vírgulas; campos entre aspas podem conter vírgulas e aspas duplicadas ("")
+    private List<String> parseCsvLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("aspas não fechadas");
+        }
+        values.add(current.toString());
+        return values;
+    }
+
+    private void reportError(Result result, long line, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxReportedErrors) {
+            result.getErrors().add(new RowError(line, message));
+        }
+    }
+}
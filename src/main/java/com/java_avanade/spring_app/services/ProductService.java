@@ -1,23 +1,53 @@
 package com.java_avanade.spring_app.services;
 
+import com.java_avanade.spring_app.cache.ProductCache;
+import com.java_avanade.spring_app.dtos.CursorPageDTO;
+import com.java_avanade.spring_app.dtos.FacetPageDTO;
 import com.java_avanade.spring_app.dtos.ProductDTO;
+import com.java_avanade.spring_app.dtos.ProductLookupDTO;
+import com.java_avanade.spring_app.dtos.SuggestionDTO;
+import com.java_avanade.spring_app.exceptions.BadRequestException;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
+import com.java_avanade.spring_app.exceptions.ServiceUnavailableException;
 import com.java_avanade.spring_app.models.Affiliate;
 import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.models.Stock;
 import com.java_avanade.spring_app.repositories.AffiliateRepository;
 import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.repositories.ProductRepositoryCustom.CatalogKey;
+import com.java_avanade.spring_app.repositories.ProductRepositoryCustom.CatalogSort;
 import com.java_avanade.spring_app.repositories.StockRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import com.java_avanade.spring_app.search.ProductFacetIndex.FacetQuery;
+import com.java_avanade.spring_app.search.ProductFacetIndex.FacetResult;
+import com.java_avanade.spring_app.search.ProductSearchIndex;
+import com.java_avanade.spring_app.search.ProductSearchIndex.SearchHit;
+import com.java_avanade.spring_app.search.ProductSuggester;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
 
 @Service
 public class ProductService {
 
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final String RELEVANCE_SORT = "RELEVANCE";
+    private static final String FILTER_CURSOR = "FILTER";
+    private static final String AFFILIATE_CURSOR = "AFFILIATE";
+
     @Autowired
     private ProductRepository productRepository;
 
@@ -27,39 +57,298 @@ public class ProductService {
     @Autowired
     private StockRepository stockRepository;
 
-    public List<ProductDTO> getAllProducts() {
-        return productRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+
+    @Autowired
+    private ProductSuggester productSuggester;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    // Catálogo paginado por keyset: o custo por página independe do tamanho do catálogo
+    public CursorPageDTO<ProductDTO> getAllProducts(String sort, String cursor, Integer limit) {
+        return getCatalogPage(null, null, sort, cursor, limit);
     }
 
     public ProductDTO getProductById(Long id) {
-        Product product = productRepository.findById(id)
+        return productCache.get(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Produto", "id", id));
-        return convertToDTO(product);
     }
 
+    // Vários produtos de uma vez, na ordem pedida; ausentes do cache são carregados em uma única consulta
+    public List<ProductLookupDTO> getProductsByIds(List<Long> ids) {
+        BatchIds.validate(ids);
+        Map<Long, ProductDTO> byCode = productCache.getAll(new LinkedHashSet<>(ids));
+        List<ProductLookupDTO> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            ProductDTO product = byCode.get(id);
+            result.add(new ProductLookupDTO(id, product != null, product));
+        }
+        return result;
+    }
+
+    @Transactional(readOnly = true)
     public Product getProductEntityById(Long id) {
         return productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Produto", "id", id));
     }
 
     public List<ProductDTO> getProductsByAffiliateId(Long affiliateId) {
-        return productRepository.findByAffiliateId(affiliateId).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return productRepository.findCatalogByAffiliateId(affiliateId);
+    }
+
+    // Catálogo do afiliado em páginas: uma única consulta de projeção por página
+    public CursorPageDTO<ProductDTO> getAffiliateCatalogPage(Long affiliateId, String cursor, Integer limit) {
+        Long afterCode = 0L;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                afterCode = Long.valueOf(decodeCursorParts(cursor, AFFILIATE_CURSOR)[1]);
+            } catch (NumberFormatException e) {
+                throw new BadRequestException("Cursor inválido", e);
+            }
+        }
+        int pageSize = pageSize(limit);
+
+        List<ProductDTO> items = new ArrayList<>(
+                productRepository.findCatalogPageByAffiliateId(affiliateId, afterCode, PageRequest.of(0, pageSize + 1)));
+        boolean hasMore = items.size() > pageSize;
+        if (hasMore) {
+            items = items.subList(0, pageSize);
+        }
+        String nextCursor = hasMore
+                ? encodeCursor(AFFILIATE_CURSOR, items.get(items.size() - 1).getProductCode(), "")
+                : null;
+        return new CursorPageDTO<>(items, nextCursor, hasMore);
+    }
+
+    // Busca pelo índice invertido em memória; o banco só carrega os produtos da página
+    public CursorPageDTO<ProductDTO> searchProducts(String keyword, String sort, String cursor, Integer limit) {
+        String sortName = sort == null || sort.isBlank() ? RELEVANCE_SORT : sort.trim().toUpperCase(Locale.ROOT);
+        if (!productSearchIndex.isReady()) {
+            // Índice ainda em construção (inicialização): consulta no banco, sem ranking de relevância.
+            // Um cursor de relevância não tem posição equivalente no banco: a busca recomeça da primeira página
+            if (RELEVANCE_SORT.equals(sortName)) {
+                return getCatalogPage(null, keyword, null, restartIfCursorOf(cursor, RELEVANCE_SORT), limit);
+            }
+            return getCatalogPage(null, keyword, sort, cursor, limit);
+        }
+        if (RELEVANCE_SORT.equals(sortName)) {
+            // Cursor emitido pela consulta no banco enquanto o índice era construído
+            cursor = restartIfCursorOf(cursor, CatalogSort.NEWEST.name());
+        }
+
+        Comparator<SearchHit> order = searchOrder(sortName);
+        int pageSize = pageSize(limit);
+        List<SearchHit> hits = productSearchIndex.search(keyword);
+        if (!RELEVANCE_SORT.equals(sortName)) {
+            hits.sort(order);
+        }
+
+        int start = 0;
+        if (cursor != null && !cursor.isBlank()) {
+            SearchHit after = decodeSearchCursor(cursor, sortName);
+            int position = Collections.binarySearch(hits, after, order);
+            start = position >= 0 ? position + 1 : -position - 1;
+        }
+        int end = Math.min(start + pageSize, hits.size());
+        List<SearchHit> page = start < end ? hits.subList(start, end) : Collections.emptyList();
+        boolean hasMore = end < hits.size();
+
+        List<ProductDTO> items = findCatalogInOrder(page.stream().map(SearchHit::productCode).toList());
+        String nextCursor = hasMore ? encodeSearchCursor(sortName, page.get(page.size() - 1)) : null;
+        return new CursorPageDTO<>(items, nextCursor, hasMore);
     }
 
-    public List<ProductDTO> searchProducts(String keyword) {
-        return productRepository.searchByKeyword(keyword).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    // Filtros combinados com contagem por faceta, resolvidos nos bitmaps em memória
+    public FacetPageDTO<ProductDTO> filterProducts(String productType, String productChoice, BigDecimal minPrice,
+                                                   BigDecimal maxPrice, boolean inStockOnly,
+                                                   String cursor, Integer limit) {
+        if (!productFacetIndex.isReady()) {
+            throw new ServiceUnavailableException("Índice de facetas em construção, tente novamente em instantes");
+        }
+        Long afterCode = cursor != null && !cursor.isBlank() ? decodeFilterCursor(cursor) : null;
+        FacetQuery query = new FacetQuery(blankToNull(productType), blankToNull(productChoice),
+                minPrice, maxPrice, inStockOnly);
+        FacetResult result = productFacetIndex.filter(query, afterCode, pageSize(limit));
+
+        List<ProductDTO> items = findCatalogInOrder(result.productCodes());
+        String nextCursor = result.hasMore()
+                ? encodeCursor(FILTER_CURSOR, result.productCodes().get(result.productCodes().size() - 1), "")
+                : null;
+        return new FacetPageDTO<>(items, nextCursor, result.hasMore(), result.total(), result.facets());
+    }
+
+    // Autocompletar: atendido inteiramente pelo trie em memória
+    public List<SuggestionDTO> suggestProducts(String prefix, Integer limit) {
+        int size = limit == null ? productSuggester.maxSuggestions()
+                : Math.max(1, Math.min(limit, productSuggester.maxSuggestions()));
+        return productSuggester.suggest(prefix, size);
+    }
+
+    public CursorPageDTO<ProductDTO> getProductsByType(String productType, String sort, String cursor, Integer limit) {
+        return getCatalogPage(productType, null, sort, cursor, limit);
+    }
+
+    private CursorPageDTO<ProductDTO> getCatalogPage(String productType, String keyword,
+                                                     String sort, String cursor, Integer limit) {
+        CatalogSort catalogSort = parseSort(sort);
+        CatalogKey after = decodeCursor(cursor, catalogSort);
+        int pageSize = pageSize(limit);
+
+        // Busca um código a mais para saber se existe próxima página
+        List<Long> pageIds = productRepository.findCatalogPageIds(productType, keyword, catalogSort, after, pageSize + 1);
+        boolean hasMore = pageIds.size() > pageSize;
+        if (hasMore) {
+            pageIds = pageIds.subList(0, pageSize);
+        }
+
+        List<ProductDTO> items = findCatalogInOrder(pageIds);
+        String nextCursor = hasMore && !items.isEmpty()
+                ? encodeCursor(catalogSort, items.get(items.size() - 1))
+                : null;
+        return new CursorPageDTO<>(items, nextCursor, hasMore);
     }
 
-    public List<ProductDTO> getProductsByType(String productType) {
-        return productRepository.findByProductType(productType).stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    // Carrega as projeções dos códigos informados preservando a ordem recebida
+    private List<ProductDTO> findCatalogInOrder(List<Long> productCodes) {
+        if (productCodes.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, ProductDTO> byCode = productCache.getAll(productCodes);
+
+        List<ProductDTO> ordered = new ArrayList<>(productCodes.size());
+        for (Long productCode : productCodes) {
+            ProductDTO dto = byCode.get(productCode);
+            if (dto != null) {
+                ordered.add(dto);
+            }
+        }
+        return ordered;
+    }
+
+    private Long decodeFilterCursor(String cursor) {
+        try {
+            return Long.valueOf(decodeCursorParts(cursor, FILTER_CURSOR)[1]);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+    }
+
+    private String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private int pageSize(Integer limit) {
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    }
+
+    private Comparator<SearchHit> searchOrder(String sortName) {
+        Comparator<SearchHit> byCode = Comparator.comparing(SearchHit::productCode);
+        return switch (sortName) {
+            case RELEVANCE_SORT -> Comparator.comparingDouble(SearchHit::score).reversed().thenComparing(byCode);
+            case "PRICE" -> Comparator.comparing(SearchHit::price).thenComparing(byCode);
+            case "NAME" -> Comparator.comparing(SearchHit::name).thenComparing(byCode);
+            case "NEWEST" -> byCode.reversed();
+            default -> throw new BadRequestException(
+                    "Ordenação inválida: " + sortName.toLowerCase(Locale.ROOT) + ". Use relevance, price, name ou newest");
+        };
+    }
+
+    private String encodeSearchCursor(String sortName, SearchHit last) {
+        String sortValue = switch (sortName) {
+            case RELEVANCE_SORT -> Double.toString(last.score());
+            case "PRICE" -> last.price().toPlainString();
+            case "NAME" -> last.name();
+            default -> "";
+        };
+        return encodeCursor(sortName, last.productCode(), sortValue);
+    }
+
+    private SearchHit decodeSearchCursor(String cursor, String sortName) {
+        String[] parts = decodeCursorParts(cursor, sortName);
+        try {
+            Long productCode = Long.valueOf(parts[1]);
+            return switch (sortName) {
+                case RELEVANCE_SORT -> new SearchHit(productCode, Double.parseDouble(parts[2]), null, null);
+                case "PRICE" -> new SearchHit(productCode, 0, null, new BigDecimal(parts[2]));
+                case "NAME" -> new SearchHit(productCode, 0, parts[2], null);
+                default -> new SearchHit(productCode, 0, null, null);
+            };
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+    }
+
+    private CatalogSort parseSort(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return CatalogSort.NEWEST;
+        }
+        try {
+            return CatalogSort.valueOf(sort.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Ordenação inválida: " + sort + ". Use price, name ou newest");
+        }
+    }
+
+    // Cursor opaco: base64url de "ordenação|productCode|valor da chave de ordenação"
+    private String encodeCursor(CatalogSort sort, ProductDTO last) {
+        String sortValue = switch (sort) {
+            case PRICE -> last.getPrice().toPlainString();
+            case NAME -> last.getName();
+            case NEWEST -> "";
+        };
+        return encodeCursor(sort.name(), last.getProductCode(), sortValue);
+    }
+
+    private CatalogKey decodeCursor(String cursor, CatalogSort sort) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        String[] parts = decodeCursorParts(cursor, sort.name());
+        try {
+            if (sort == CatalogSort.PRICE) {
+                new BigDecimal(parts[2]);
+            }
+            return new CatalogKey(Long.valueOf(parts[1]), parts[2]);
+        } catch (NumberFormatException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+    }
+
+    private String encodeCursor(String sortName, Long productCode, String sortValue) {
+        String raw = sortName + "|" + productCode + "|" + sortValue;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Descarta (primeira página) um cursor da ordenação informada; os demais seguem para a validação normal
+    private String restartIfCursorOf(String cursor, String sortName) {
+        if (cursor == null || cursor.isBlank()) {
+            return cursor;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            return raw.startsWith(sortName + "|") ? null : cursor;
+        } catch (IllegalArgumentException e) {
+            return cursor;
+        }
+    }
+
+    private String[] decodeCursorParts(String cursor, String sortName) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Cursor inválido", e);
+        }
+        String[] parts = raw.split("\\|", 3);
+        if (parts.length != 3 || !sortName.equals(parts[0])) {
+            throw new BadRequestException("Cursor inválido para a ordenação solicitada");
+        }
+        return parts;
     }
 
     @Transactional
@@ -68,6 +357,7 @@ public class ProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("Afiliado", "id", affiliateId));
 
         product.setAffiliate(affiliate);
+        product.setAvailableStock(initialStock != null && initialStock > 0 ? initialStock : 0);
         Product savedProduct = productRepository.save(product);
 
         // Criar estoque inicial se fornecido
@@ -78,6 +368,9 @@ public class ProductService {
             stockRepository.save(stock);
         }
 
+        productSearchIndex.indexAfterCommit(savedProduct);
+        productSuggester.markDirtyAfterCommit(savedProduct.getProductCode());
+        productFacetIndex.markDirtyAfterCommit(savedProduct.getProductCode());
         return convertToDTO(savedProduct);
     }
 
@@ -94,6 +387,10 @@ public class ProductService {
         product.setImageUrl(productDetails.getImageUrl());
 
         Product updatedProduct = productRepository.save(product);
+        productSearchIndex.indexAfterCommit(updatedProduct);
+        productSuggester.markDirtyAfterCommit(id);
+        productCache.invalidate(id);
+        productFacetIndex.markDirtyAfterCommit(id);
         return convertToDTO(updatedProduct);
     }
 
@@ -108,6 +405,10 @@ public class ProductService {
         });
 
         productRepository.delete(product);
+        productSearchIndex.removeAfterCommit(id);
+        productSuggester.markDirtyAfterCommit(id);
+        productCache.invalidate(id);
+        productFacetIndex.markDirtyAfterCommit(id);
     }
 
     public ProductDTO convertToDTO(Product product) {
@@ -126,9 +427,8 @@ public class ProductService {
             dto.setAffiliateName(product.getAffiliate().getName());
         }
 
-        // Estoque disponível
-        Integer availableStock = stockRepository.getTotalQuantityByProductId(product.getProductCode());
-        dto.setAvailableStock(availableStock != null ? availableStock : 0);
+        // Estoque disponível (coluna desnormalizada, sem agregar stocks)
+        dto.setAvailableStock(product.getAvailableStock());
 
         return dto;
     }
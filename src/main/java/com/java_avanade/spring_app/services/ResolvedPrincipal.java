@@ -0,0 +1,56 @@
+package com.java_avanade.spring_app.services;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Identidade resolvida de um usuário (admin, cliente ou afiliado), independente da tabela de origem.
+ * Imutável para poder ser compartilhada pelo cache entre requisições.
+ */
+public final class ResolvedPrincipal {
+
+    private final String username;
+    private final String userType;
+    private final Long id;
+    private final Long adminId;
+    private final String email;
+    private final String password;
+    private final Set<String> roles;
+    private final boolean enabled;
+
+    public ResolvedPrincipal(String username, String userType, Long id, Long adminId, String email,
+                             String password, Set<String> roles, boolean enabled) {
+        this.username = username;
+        this.userType = userType;
+        this.id = id;
+        this.adminId = adminId;
+        this.email = email;
+        this.password = password;
+        this.roles = Set.copyOf(roles);
+        this.enabled = enabled;
+    }
+
+    public String getUsername() { return username; }
+    public String getUserType() { return userType; }
+    public Long getId() { return id; }
+    public Long getAdminId() { return adminId; }
+    public String getEmail() { return email; }
+    public String getPassword() { return password; }
+    public Set<String> getRoles() { return roles; }
+    public boolean isEnabled() { return enabled; }
+
+    public List<GrantedAuthority> getAuthorities() {
+        return roles.stream()
+                .map(role -> new SimpleGrantedAuthority("ROLE_" + role))
+                .collect(Collectors.toList());
+    }
+
+    // Cria uma nova instância a cada chamada: o AuthenticationManager apaga a senha do principal após o login
+    public AuthenticatedPrincipal toUserDetails() {
+        return new AuthenticatedPrincipal(username, password, enabled, getAuthorities(), userType, id, adminId);
+    }
+}
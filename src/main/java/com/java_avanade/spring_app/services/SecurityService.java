@@ -10,7 +10,7 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 @Service
 public class SecurityService {
@@ -20,12 +20,6 @@ public class SecurityService {
     @Autowired
     private UserRepository userRepository;
 
-    @Autowired
-    private ClientRepository clientRepository;
-
-    @Autowired
-    private AffiliateRepository affiliateRepository;
-
     @Autowired
     private OrderRepository orderRepository;
 
@@ -44,14 +38,22 @@ public class SecurityService {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    @Autowired
+    private AuthorizationContext authorizationContext;
+
     // Verifica se o usuário é o dono do recurso, um administrador direto, ou o superadmin
     public boolean isOwnerOrAdmin(Long resourceOwnerId, Authentication authentication) {
+        return memoize("isOwnerOrAdmin", resourceOwnerId, () -> checkOwnerOrAdmin(resourceOwnerId, authentication));
+    }
+
+    private boolean checkOwnerOrAdmin(Long resourceOwnerId, Authentication authentication) {
         UserDetails userDetails = (UserDetails) authentication.getPrincipal();
         String username = userDetails.getUsername();
 
-        // Obter o tipo real de usuário e ID usando o CustomUserDetailsService
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
-        Long userId = customUserDetailsService.getRealUserIdByUsername(username);
+        // Obter o tipo real de usuário e ID a partir do principal autenticado
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
+        Long userId = principal.getId();
 
         logger.debug("Verificando acesso: usuário {} do tipo {} para recurso {}", username, userType, resourceOwnerId);
 
@@ -68,51 +70,21 @@ public class SecurityService {
             return true;
         }
 
-        // Verificar se é um cliente e se é o dono do recurso
-        if ("CLIENT".equals(userType)) {
-            Optional<Client> clientOptional = clientRepository.findByUsername(username);
-            if (clientOptional.isPresent()) {
-                Client client = clientOptional.get();
-
-                // Verificar se é o próprio cliente
-                if (client.getId().equals(resourceOwnerId)) {
-                    logger.debug("Acesso permitido: cliente {} é o dono do recurso {}",
-                            client.getId(), resourceOwnerId);
-                    return true;
-                }
-
-                // Verificar se o admin do cliente tem acesso a esse recurso
-                User clientAdmin = userRepository.findById(client.getAdminId())
-                        .orElse(null);
-                if (clientAdmin != null && clientAdmin.getRoles().contains("SUPERUSER")) {
-                    logger.debug("Acesso permitido: cliente {} tem admin SUPERUSER {}",
-                            client.getId(), clientAdmin.getId());
-                    return true;
-                }
+        // Verificar se é um cliente ou afiliado e se é o dono do recurso
+        if ("CLIENT".equals(userType) || "AFFILIATE".equals(userType)) {
+            // Verificar se é o próprio cliente/afiliado
+            if (userId.equals(resourceOwnerId)) {
+                logger.debug("Acesso permitido: {} {} é o dono do recurso {}",
+                        userType, userId, resourceOwnerId);
+                return true;
             }
-        }
 
-        // Verificar se é um afiliado e se é o dono do recurso
-        if ("AFFILIATE".equals(userType)) {
-            Optional<Affiliate> affiliateOptional = affiliateRepository.findByUsername(username);
-            if (affiliateOptional.isPresent()) {
-                Affiliate affiliate = affiliateOptional.get();
-
-                // Verificar se é o próprio afiliado
-                if (affiliate.getId().equals(resourceOwnerId)) {
-                    logger.debug("Acesso permitido: afiliado {} é o dono do recurso {}",
-                            affiliate.getId(), resourceOwnerId);
-                    return true;
-                }
-
-                // Verificar se o admin do afiliado tem acesso a esse recurso
-                User affiliateAdmin = userRepository.findById(affiliate.getAdminId())
-                        .orElse(null);
-                if (affiliateAdmin != null && affiliateAdmin.getRoles().contains("SUPERUSER")) {
-                    logger.debug("Acesso permitido: afiliado {} tem admin SUPERUSER {}",
-                            affiliate.getId(), affiliateAdmin.getId());
-                    return true;
-                }
+            // Verificar se o admin do cliente/afiliado tem acesso a esse recurso
+            Long adminId = principal.getAdminId();
+            if (adminId != null && userRepository.existsByIdAndRole(adminId, "SUPERUSER")) {
+                logger.debug("Acesso permitido: {} {} tem admin SUPERUSER {}",
+                        userType, userId, adminId);
+                return true;
             }
         }
 
@@ -122,9 +94,14 @@ public class SecurityService {
 
     // Verifica se o ID do usuário corresponde ao usuário autenticado
     public boolean isUserIdMatch(Long userId, Authentication authentication) {
+        return memoize("isUserIdMatch", userId, () -> checkUserIdMatch(userId, authentication));
+    }
+
+    private boolean checkUserIdMatch(Long userId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
-        Long authenticatedUserId = customUserDetailsService.getRealUserIdByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
+        Long authenticatedUserId = principal.getId();
 
         logger.debug("Verificando correspondência de ID: usuário {} (tipo: {}, ID: {}) com ID solicitado {}",
                 username, userType, authenticatedUserId, userId);
@@ -148,8 +125,13 @@ public class SecurityService {
 
     // Verifica se o usuário é dono do pedido
     public boolean isOrderOwner(Long orderId, Authentication authentication) {
+        return memoize("isOrderOwner", orderId, () -> checkOrderOwner(orderId, authentication));
+    }
+
+    private boolean checkOrderOwner(Long orderId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando propriedade do pedido: usuário {} (tipo: {}) para pedido {}",
                 username, userType, orderId);
@@ -166,32 +148,28 @@ public class SecurityService {
             return false;
         }
 
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isEmpty()) {
-            logger.debug("Acesso negado: pedido {} não encontrado", orderId);
-            return false;
-        }
-
-        Order order = orderOpt.get();
-        Client orderClient = order.getClient();
-
         // Verificar se o cliente autenticado é o dono do pedido
-        Optional<Client> clientOpt = clientRepository.findByUsername(username);
-        if (clientOpt.isPresent() && clientOpt.get().getId().equals(orderClient.getId())) {
+        Long clientId = principal.getId();
+        if (orderRepository.existsByOrderIdAndClient_Id(orderId, clientId)) {
             logger.debug("Acesso permitido: cliente {} é dono do pedido {}",
-                    clientOpt.get().getId(), orderId);
+                    clientId, orderId);
             return true;
         }
 
         logger.debug("Acesso negado: cliente {} não é dono do pedido {}",
-                clientOpt.map(Client::getId).orElse(null), orderId);
+                clientId, orderId);
         return false;
     }
 
     // Verifica se o pedido contém produtos do afiliado
     public boolean isOrderContainsAffiliateProdut(Long orderId, Authentication authentication) {
+        return memoize("isOrderContainsAffiliateProdut", orderId, () -> checkOrderContainsAffiliateProdut(orderId, authentication));
+    }
+
+    private boolean checkOrderContainsAffiliateProdut(Long orderId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando se pedido contém produtos do afiliado: usuário {} (tipo: {}) para pedido {}",
                 username, userType, orderId);
@@ -208,34 +186,18 @@ public class SecurityService {
             return false;
         }
 
-        // Verificar se é um afiliado
-        Optional<Affiliate> affiliateOpt = affiliateRepository.findByUsername(username);
-        if (affiliateOpt.isEmpty()) {
-            logger.debug("Acesso negado: afiliado não encontrado para username {}", username);
-            return false;
-        }
-
-        Affiliate affiliate = affiliateOpt.get();
-
-        // Verificar se o pedido contém produtos deste afiliado
-        Optional<Order> orderOpt = orderRepository.findById(orderId);
-        if (orderOpt.isEmpty()) {
-            logger.debug("Acesso negado: pedido {} não encontrado", orderId);
-            return false;
-        }
-
-        Order order = orderOpt.get();
+        // ID do afiliado autenticado, já resolvido pelo principal
+        Long affiliateId = principal.getId();
 
-        // Verificar cada item do carrinho no pedido
-        boolean containsAffiliateProduct = order.getCartItems().stream()
-                .anyMatch(cartItem -> cartItem.getProduct().getAffiliate().getId().equals(affiliate.getId()));
+        // Verificar se algum item do pedido é de um produto deste afiliado
+        boolean containsAffiliateProduct = cartRepository.existsByOrder_OrderIdAndProduct_Affiliate_Id(orderId, affiliateId);
 
         if (containsAffiliateProduct) {
             logger.debug("Acesso permitido: pedido {} contém produtos do afiliado {}",
-                    orderId, affiliate.getId());
+                    orderId, affiliateId);
         } else {
             logger.debug("Acesso negado: pedido {} não contém produtos do afiliado {}",
-                    orderId, affiliate.getId());
+                    orderId, affiliateId);
         }
 
         return containsAffiliateProduct;
@@ -243,8 +205,13 @@ public class SecurityService {
 
     // Verifica se o usuário é dono do item do carrinho
     public boolean isCartItemOwner(Long cartItemId, Authentication authentication) {
+        return memoize("isCartItemOwner", cartItemId, () -> checkCartItemOwner(cartItemId, authentication));
+    }
+
+    private boolean checkCartItemOwner(Long cartItemId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando propriedade do item do carrinho: usuário {} (tipo: {}) para item {}",
                 username, userType, cartItemId);
@@ -261,31 +228,18 @@ public class SecurityService {
             return false;
         }
 
-        // Verificar se é um cliente
-        Optional<Client> clientOpt = clientRepository.findByUsername(username);
-        if (clientOpt.isEmpty()) {
-            logger.debug("Acesso negado: cliente não encontrado para username {}", username);
-            return false;
-        }
-
-        Client client = clientOpt.get();
+        // ID do cliente autenticado, já resolvido pelo principal
+        Long clientId = principal.getId();
 
         // Verificar se o item do carrinho pertence a um pedido deste cliente
-        Optional<Cart> cartItemOpt = cartRepository.findById(cartItemId);
-        if (cartItemOpt.isEmpty()) {
-            logger.debug("Acesso negado: item do carrinho {} não encontrado", cartItemId);
-            return false;
-        }
-
-        Cart cartItem = cartItemOpt.get();
-        boolean isOwner = cartItem.getOrder().getClient().getId().equals(client.getId());
+        boolean isOwner = cartRepository.existsByIdAndOrder_Client_Id(cartItemId, clientId);
 
         if (isOwner) {
             logger.debug("Acesso permitido: cliente {} é dono do item do carrinho {}",
-                    client.getId(), cartItemId);
+                    clientId, cartItemId);
         } else {
             logger.debug("Acesso negado: cliente {} não é dono do item do carrinho {}",
-                    client.getId(), cartItemId);
+                    clientId, cartItemId);
         }
 
         return isOwner;
@@ -293,8 +247,13 @@ public class SecurityService {
 
     // Verifica se o usuário é o dono do produto
     public boolean isProductOwner(Long productId, Authentication authentication) {
+        return memoize("isProductOwner", productId, () -> checkProductOwner(productId, authentication));
+    }
+
+    private boolean checkProductOwner(Long productId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando propriedade do produto: usuário {} (tipo: {}) para produto {}",
                 username, userType, productId);
@@ -311,31 +270,18 @@ public class SecurityService {
             return false;
         }
 
-        // Verificar se é um afiliado
-        Optional<Affiliate> affiliateOpt = affiliateRepository.findByUsername(username);
-        if (affiliateOpt.isEmpty()) {
-            logger.debug("Acesso negado: afiliado não encontrado para username {}", username);
-            return false;
-        }
-
-        Affiliate affiliate = affiliateOpt.get();
+        // ID do afiliado autenticado, já resolvido pelo principal
+        Long affiliateId = principal.getId();
 
         // Verificar se o produto pertence a este afiliado
-        Optional<Product> productOpt = productRepository.findById(productId);
-        if (productOpt.isEmpty()) {
-            logger.debug("Acesso negado: produto {} não encontrado", productId);
-            return false;
-        }
-
-        Product product = productOpt.get();
-        boolean isOwner = product.getAffiliate().getId().equals(affiliate.getId());
+        boolean isOwner = productRepository.existsByProductCodeAndAffiliate_Id(productId, affiliateId);
 
         if (isOwner) {
             logger.debug("Acesso permitido: afiliado {} é dono do produto {}",
-                    affiliate.getId(), productId);
+                    affiliateId, productId);
         } else {
             logger.debug("Acesso negado: afiliado {} não é dono do produto {}",
-                    affiliate.getId(), productId);
+                    affiliateId, productId);
         }
 
         return isOwner;
@@ -343,8 +289,13 @@ public class SecurityService {
 
     // Verifica se o usuário é o dono do estoque
     public boolean isStockOwner(Long stockId, Authentication authentication) {
+        return memoize("isStockOwner", stockId, () -> checkStockOwner(stockId, authentication));
+    }
+
+    private boolean checkStockOwner(Long stockId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando propriedade do estoque: usuário {} (tipo: {}) para estoque {}",
                 username, userType, stockId);
@@ -361,31 +312,18 @@ public class SecurityService {
             return false;
         }
 
-        // Verificar se é um afiliado
-        Optional<Affiliate> affiliateOpt = affiliateRepository.findByUsername(username);
-        if (affiliateOpt.isEmpty()) {
-            logger.debug("Acesso negado: afiliado não encontrado para username {}", username);
-            return false;
-        }
-
-        Affiliate affiliate = affiliateOpt.get();
+        // ID do afiliado autenticado, já resolvido pelo principal
+        Long affiliateId = principal.getId();
 
         // Verificar se o estoque pertence a um produto deste afiliado
-        Optional<Stock> stockOpt = stockRepository.findById(stockId);
-        if (stockOpt.isEmpty()) {
-            logger.debug("Acesso negado: estoque {} não encontrado", stockId);
-            return false;
-        }
-
-        Stock stock = stockOpt.get();
-        boolean isOwner = stock.getProduct().getAffiliate().getId().equals(affiliate.getId());
+        boolean isOwner = stockRepository.existsByIdAndProduct_Affiliate_Id(stockId, affiliateId);
 
         if (isOwner) {
             logger.debug("Acesso permitido: afiliado {} é dono do estoque {}",
-                    affiliate.getId(), stockId);
+                    affiliateId, stockId);
         } else {
             logger.debug("Acesso negado: afiliado {} não é dono do estoque {}",
-                    affiliate.getId(), stockId);
+                    affiliateId, stockId);
         }
 
         return isOwner;
@@ -393,8 +331,13 @@ public class SecurityService {
 
     // Verifica se o usuário é o dono do checkout
     public boolean isCheckoutOwner(Long checkoutId, Authentication authentication) {
+        return memoize("isCheckoutOwner", checkoutId, () -> checkCheckoutOwner(checkoutId, authentication));
+    }
+
+    private boolean checkCheckoutOwner(Long checkoutId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando propriedade do checkout: usuário {} (tipo: {}) para checkout {}",
                 username, userType, checkoutId);
@@ -411,31 +354,18 @@ public class SecurityService {
             return false;
         }
 
-        // Verificar se é um cliente
-        Optional<Client> clientOpt = clientRepository.findByUsername(username);
-        if (clientOpt.isEmpty()) {
-            logger.debug("Acesso negado: cliente não encontrado para username {}", username);
-            return false;
-        }
-
-        Client client = clientOpt.get();
+        // ID do cliente autenticado, já resolvido pelo principal
+        Long clientId = principal.getId();
 
         // Verificar se o checkout pertence a um pedido deste cliente
-        Optional<Checkout> checkoutOpt = checkoutRepository.findById(checkoutId);
-        if (checkoutOpt.isEmpty()) {
-            logger.debug("Acesso negado: checkout {} não encontrado", checkoutId);
-            return false;
-        }
-
-        Checkout checkout = checkoutOpt.get();
-        boolean isOwner = checkout.getOrder().getClient().getId().equals(client.getId());
+        boolean isOwner = checkoutRepository.existsByIdAndOrder_Client_Id(checkoutId, clientId);
 
         if (isOwner) {
             logger.debug("Acesso permitido: cliente {} é dono do checkout {}",
-                    client.getId(), checkoutId);
+                    clientId, checkoutId);
         } else {
             logger.debug("Acesso negado: cliente {} não é dono do checkout {}",
-                    client.getId(), checkoutId);
+                    clientId, checkoutId);
         }
 
         return isOwner;
@@ -443,8 +373,13 @@ public class SecurityService {
 
     // Verifica se o checkout contém produtos do afiliado
     public boolean isCheckoutContainsAffiliateProduct(Long checkoutId, Authentication authentication) {
+        return memoize("isCheckoutContainsAffiliateProduct", checkoutId, () -> checkCheckoutContainsAffiliateProduct(checkoutId, authentication));
+    }
+
+    private boolean checkCheckoutContainsAffiliateProduct(Long checkoutId, Authentication authentication) {
         String username = authentication.getName();
-        String userType = customUserDetailsService.getUserTypeByUsername(username);
+        AuthenticatedPrincipal principal = principalOf(authentication);
+        String userType = principal.getUserType();
 
         logger.debug("Verificando se checkout contém produtos do afiliado: usuário {} (tipo: {}) para checkout {}",
                 username, userType, checkoutId);
@@ -461,49 +396,46 @@ public class SecurityService {
             return false;
         }
 
-        // Verificar se é um afiliado
-        Optional<Affiliate> affiliateOpt = affiliateRepository.findByUsername(username);
-        if (affiliateOpt.isEmpty()) {
-            logger.debug("Acesso negado: afiliado não encontrado para username {}", username);
-            return false;
-        }
-
-        Affiliate affiliate = affiliateOpt.get();
-
-        // Verificar se o checkout contém produtos deste afiliado
-        Optional<Checkout> checkoutOpt = checkoutRepository.findById(checkoutId);
-        if (checkoutOpt.isEmpty()) {
-            logger.debug("Acesso negado: checkout {} não encontrado", checkoutId);
-            return false;
-        }
-
-        Checkout checkout = checkoutOpt.get();
-
-        // Verificar se o produto do checkout pertence ao afiliado
-        if (checkout.getProduct() != null) {
-            boolean isProductOwner = checkout.getProduct().getAffiliate().getId().equals(affiliate.getId());
-            if (isProductOwner) {
-                logger.debug("Acesso permitido: produto do checkout {} pertence ao afiliado {}",
-                        checkoutId, affiliate.getId());
-                return true;
-            }
-        }
+        // ID do afiliado autenticado, já resolvido pelo principal
+        Long affiliateId = principal.getId();
 
-        // Verificar os produtos no pedido associado ao checkout
-        boolean containsAffiliateProduct = checkout.getOrder().getCartItems().stream()
-                .anyMatch(cartItem -> cartItem.getProduct().getAffiliate().getId().equals(affiliate.getId()));
+        // Produto do próprio checkout ou qualquer item do pedido associado, em uma única consulta
+        boolean containsAffiliateProduct = checkoutRepository.existsAffiliateProductInCheckout(checkoutId, affiliateId);
 
         if (containsAffiliateProduct) {
             logger.debug("Acesso permitido: checkout {} contém produtos do afiliado {}",
-                    checkoutId, affiliate.getId());
+                    checkoutId, affiliateId);
         } else {
             logger.debug("Acesso negado: checkout {} não contém produtos do afiliado {}",
-                    checkoutId, affiliate.getId());
+                    checkoutId, affiliateId);
         }
 
         return containsAffiliateProduct;
     }
 
+    // Tipo, ID e adminId vêm do próprio principal; o cache só é consultado para principais de outra origem
+    private AuthenticatedPrincipal principalOf(Authentication authentication) {
+        if (authentication.getPrincipal() instanceof AuthenticatedPrincipal principal) {
+            return principal;
+        }
+        if (AuthorizationContext.isActive()) {
+            return authorizationContext.principal(() -> resolvePrincipal(authentication));
+        }
+        return resolvePrincipal(authentication);
+    }
+
+    private AuthenticatedPrincipal resolvePrincipal(Authentication authentication) {
+        return customUserDetailsService.resolvePrincipal(authentication.getName()).toUserDetails();
+    }
+
+    // Reaproveita o resultado da mesma verificação já avaliada nesta requisição (ex.: expressões encadeadas com "or")
+    private boolean memoize(String check, Long resourceId, BooleanSupplier evaluation) {
+        if (!AuthorizationContext.isActive()) {
+            return evaluation.getAsBoolean();
+        }
+        return authorizationContext.fact(check + ":" + resourceId, evaluation);
+    }
+
     // Método utilitário para verificar papel
     private boolean hasRole(UserDetails userDetails, String role) {
         boolean hasRole = userDetails.getAuthorities().stream()
@@ -0,0 +1,148 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.models.Cart;
+import com.java_avanade.spring_app.models.StockHold;
+import com.java_avanade.spring_app.repositories.StockHoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reservas de estoque com prazo para itens de carrinho.
+ *
+ * Adicionar ao carrinho debita o estoque (um único UPDATE condicional) e registra uma reserva
+ * com expiração; nenhuma consulta às reservas é feita para calcular disponibilidade.
+ * O checkout converte as reservas em venda; reservas expiradas são devolvidas ao estoque
+ * pelo sweeper. Reservas são sempre obtidas por remoção condicional, de modo que checkout,
+ * alteração do carrinho e sweeper nunca devolvem ou consomem a mesma reserva duas vezes.
+ */
+@Service
+public class StockHoldService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockHoldService.class);
+
+    @Autowired
+    private StockHoldRepository stockHoldRepository;
+
+    @Autowired
+    private StockService stockService;
+
+    @Value("${stock.holds.ttl-minutes:30}")
+    private long holdTtlMinutes;
+
+    @Value("${stock.holds.sweep-batch-size:200}")
+    private int sweepBatchSize;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public StockHoldService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // Item novo: debita o estoque e registra a reserva
+    @Transactional
+    public void holdNewCartItem(Cart cartItem) {
+        Long productId = cartItem.getProduct().getProductCode();
+        stockService.checkAndReduceStock(productId, cartItem.getQuantity());
+        saveHold(cartItem, cartItem.getQuantity());
+    }
+
+    // Ajusta a reserva do item para a nova quantidade (0 remove a reserva), renovando o prazo
+    @Transactional
+    public void adjustCartItemHold(Cart cartItem, int newQuantity) {
+        Long productId = cartItem.getProduct().getProductCode();
+        int held = claimHold(cartItem.getId());
+
+        int difference = newQuantity - held;
+        if (difference > 0) {
+            stockService.checkAndReduceStock(productId, difference);
+        } else if (difference < 0) {
+            stockService.releaseStock(productId, -difference);
+        }
+
+        if (newQuantity > 0) {
+            saveHold(cartItem, newQuantity);
+        }
+    }
+
+    // Checkout: converte as reservas do pedido em venda; itens cuja reserva expirou são reservados de novo
+    @Transactional
+    public void commitCartItems(List<Cart> cartItems) {
+        for (Cart cartItem : cartItems) {
+            int held = claimHold(cartItem.getId());
+            int missing = cartItem.getQuantity() - held;
+            if (missing > 0) {
+                logger.debug("Reserva expirada para o item {}, debitando {} unidades novamente", cartItem.getId(), missing);
+                stockService.checkAndReduceStock(cartItem.getProduct().getProductCode(), missing);
+            } else if (missing < 0) {
+                stockService.releaseStock(cartItem.getProduct().getProductCode(), -missing);
+            }
+        }
+    }
+
+    // Exclusão de pedido: devolve ao estoque apenas o que ainda está reservado
+    @Transactional
+    public void releaseOrderHolds(Long orderId) {
+        for (StockHold hold : stockHoldRepository.findByOrderId(orderId)) {
+            if (stockHoldRepository.deleteHoldById(hold.getId()) == 1) {
+                stockService.releaseStock(hold.getProductId(), hold.getQuantity());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${stock.holds.sweep-interval-ms:60000}")
+    public void releaseExpiredHolds() {
+        int processed = 0;
+        int batchSize;
+        do {
+            Integer result = transactionTemplate.execute(status -> releaseExpiredBatch(LocalDateTime.now()));
+            batchSize = result != null ? result : 0;
+            processed += batchSize;
+        } while (batchSize == sweepBatchSize);
+
+        if (processed > 0) {
+            logger.info("{} reservas de estoque expiradas processadas", processed);
+        }
+    }
+
+    private int releaseExpiredBatch(LocalDateTime now) {
+        List<StockHold> expired = stockHoldRepository.findExpired(now, PageRequest.of(0, sweepBatchSize));
+        for (StockHold hold : expired) {
+            // Checkout ou alteração concorrente pode ter obtido a reserva primeiro
+            if (stockHoldRepository.deleteIfExpired(hold.getId(), now) == 1) {
+                stockService.releaseStock(hold.getProductId(), hold.getQuantity());
+            }
+        }
+        return expired.size();
+    }
+
+    // Remove a reserva atual do item e retorna a quantidade obtida (0 se já expirou e foi devolvida)
+    private int claimHold(Long cartItemId) {
+        Optional<StockHold> hold = stockHoldRepository.findByCartItemId(cartItemId);
+        if (hold.isPresent() && stockHoldRepository.deleteHoldById(hold.get().getId()) == 1) {
+            return hold.get().getQuantity();
+        }
+        return 0;
+    }
+
+    private void saveHold(Cart cartItem, int quantity) {
+        StockHold hold = new StockHold();
+        hold.setCartItemId(cartItem.getId());
+        hold.setOrderId(cartItem.getOrder().getOrderId());
+        hold.setProductId(cartItem.getProduct().getProductCode());
+        hold.setQuantity(quantity);
+        hold.setExpiresAt(LocalDateTime.now().plusMinutes(holdTtlMinutes));
+        stockHoldRepository.save(hold);
+    }
+}
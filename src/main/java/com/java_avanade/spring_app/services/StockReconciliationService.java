@@ -0,0 +1,79 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.cache.ProductCache;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Verificação periódica de products.available_stock contra a soma de stocks.
+ *
+ * A coluna é mantida pelo StockService na mesma transação de cada alteração, então divergências
+ * indicam escrita fora desse caminho (SQL manual, importação externa). Cada divergência é
+ * registrada no log e na métrica stock.reconciliation.drift e, com repair habilitado,
+ * corrigida recalculando a coluna a partir de stocks em um único UPDATE.
+ */
+@Service
+public class StockReconciliationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReconciliationService.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Value("${stock.reconciliation.repair:true}")
+    private boolean repair;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter driftCounter;
+
+    public StockReconciliationService(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.driftCounter = Counter.builder("stock.reconciliation.drift")
+                .description("Produtos com available_stock divergente da soma de stocks")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${stock.reconciliation.interval-ms:3600000}",
+            initialDelayString = "${stock.reconciliation.interval-ms:3600000}")
+    public void reconcile() {
+        List<Object[]> drift = productRepository.findAvailableStockDrift();
+        if (drift.isEmpty()) {
+            logger.debug("Reconciliação de estoque: nenhuma divergência encontrada");
+            return;
+        }
+
+        driftCounter.increment(drift.size());
+        for (Object[] row : drift) {
+            Long productCode = (Long) row[0];
+            logger.warn("Estoque divergente no produto {}: available_stock = {}, soma de stocks = {}",
+                    productCode, row[1], row[2]);
+            if (repair) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    productRepository.recomputeAvailableStock(productCode);
+                    productCache.invalidate(productCode);
+                    productFacetIndex.markDirtyAfterCommit(productCode);
+                });
+            }
+        }
+        logger.warn("Reconciliação de estoque: {} produtos divergentes{}", drift.size(), repair ? " corrigidos" : "");
+    }
+}
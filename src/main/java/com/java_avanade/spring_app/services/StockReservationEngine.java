@@ -0,0 +1,368 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.cache.ProductCache;
+import com.java_avanade.spring_app.models.Stock;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.repositories.StockRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import com.java_avanade.spring_app.search.ProductSuggester;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Motor opcional de reserva de estoque em memória (stock.engine.enabled=true).
+ *
+ * Mantém a quantidade disponível por productCode protegida por locks listrados, aceitando ou
+ * recusando reservas sem ir ao banco. As variações líquidas (deltas) ficam pendentes e são
+ * gravadas em lote na tabela stocks a cada intervalo curto e no desligamento da aplicação.
+ * Um contador ausente ou invalidado é reconstruído a partir do banco somado aos deltas ainda
+ * não confirmados: os pendentes e os já retirados para gravação cuja transação não terminou
+ * (inFlightDeltas). A reconstrução não espera o flush nem retém locks durante a consulta; se uma
+ * gravação do produto terminar ou estiver em commit enquanto ela lê o banco, a leitura é refeita,
+ * para que nenhum delta seja contado duas vezes ou perdido.
+ *
+ * O estado é local ao nó: só deve ser habilitado quando uma única instância atende o estoque.
+ */
+@Component
+@ConditionalOnProperty(prefix = "stock.engine", name = "enabled", havingValue = "true")
+public class StockReservationEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationEngine.class);
+
+    @Autowired
+    private StockRepository stockRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    // Visões derivadas de products.available_stock, atualizadas depois que o flush grava o estoque
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private ProductSuggester productSuggester;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final ReentrantLock[] stripes;
+
+    // Impede dois flushes em lote simultâneos (agendado e desligamento); a reconstrução não o usa
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // Guardados pelos locks listrados
+    private final Map<Long, Integer> available = new ConcurrentHashMap<>();
+    private final Map<Long, Integer> pendingDeltas = new ConcurrentHashMap<>();
+    // Deltas retirados de pendingDeltas e gravados em uma transação que ainda não terminou
+    private final Map<Long, Integer> inFlightDeltas = new ConcurrentHashMap<>();
+    // Produtos cuja gravação está em commit: o banco pode ou não refletir o delta em voo
+    private final Map<Long, Integer> committing = new ConcurrentHashMap<>();
+
+    // Avança sempre que uma gravação termina; uma leitura do banco anterior à mudança é refeita
+    private final AtomicLong completedWrites = new AtomicLong();
+
+    public StockReservationEngine(PlatformTransactionManager transactionManager,
+                                  @Value("${stock.engine.stripes:64}") int stripeCount) {
+        // Transação própria: o flush nunca participa (nem sofre rollback) da transação de quem o chamou
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.stripes = new ReentrantLock[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        logger.info("Motor de reserva de estoque em memória habilitado com {} stripes", stripeCount);
+    }
+
+    // Reserva a quantidade se houver saldo; desfeita automaticamente se a transação atual sofrer rollback
+    public boolean reserve(Long productId, int quantity) {
+        while (true) {
+            ReentrantLock lock = stripeFor(productId);
+            lock.lock();
+            try {
+                Integer current = available.get(productId);
+                if (current != null) {
+                    if (current < quantity) {
+                        return false;
+                    }
+                    available.put(productId, current - quantity);
+                    pendingDeltas.merge(productId, -quantity, Integer::sum);
+                    compensateOnRollback(productId, quantity);
+                    return true;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Contador ausente: reconstrói fora do lock listrado e tenta de novo
+            rebuild(productId);
+        }
+    }
+
+    // Devolve quantidade ao saldo (devolução de carrinho ou reposição)
+    public void release(Long productId, int quantity) {
+        applyDelta(productId, quantity);
+        compensateOnRollback(productId, -quantity);
+    }
+
+    public int available(Long productId) {
+        while (true) {
+            Integer current = available.get(productId);
+            if (current != null) {
+                return current;
+            }
+            rebuild(productId);
+        }
+    }
+
+    // Descarta o contador após uma escrita absoluta no banco; o próximo acesso o reconstrói.
+    // Conta como gravação concluída: uma reconstrução que leu o banco antes da escrita refaz a leitura
+    public void invalidate(Long productId) {
+        ReentrantLock lock = stripeFor(productId);
+        lock.lock();
+        try {
+            available.remove(productId);
+            completedWrites.incrementAndGet();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Recuperação: saldo = quantidade no banco + deltas em voo + deltas ainda não gravados.
+    // A consulta roda sem nenhum lock do motor: quem chama pode estar retendo uma conexão do pool,
+    // e o flush precisa de outra para terminar.
+    public void rebuild(Long productId) {
+        while (true) {
+            long writesBefore = completedWrites.get();
+            Integer persisted = stockRepository.getTotalQuantityByProductId(productId);
+            int persistedQuantity = persisted != null ? persisted : 0;
+
+            ReentrantLock lock = stripeFor(productId);
+            lock.lock();
+            try {
+                if (available.containsKey(productId)) {
+                    return;
+                }
+                if (completedWrites.get() == writesBefore && !committing.containsKey(productId)) {
+                    int quantity = persistedQuantity + inFlightDeltas.getOrDefault(productId, 0)
+                            + pendingDeltas.getOrDefault(productId, 0);
+                    available.put(productId, quantity);
+                    logger.debug("Contador de estoque reconstruído para o produto {}: {}", productId, quantity);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            // Uma gravação terminou (ou está em commit) durante a leitura: lê o banco de novo
+            Thread.yield();
+        }
+    }
+
+    // Grava os deltas pendentes em lote, em uma única transação
+    @Scheduled(fixedDelayString = "${stock.engine.flush-interval-ms:200}")
+    public void flush() {
+        if (pendingDeltas.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // Os deltas só saem da fila depois que a transação obteve sua conexão; se ela falhar,
+            // voltam à fila ao término da transação (trackInFlight) para a próxima tentativa
+            Map<Long, Integer> batch = transactionTemplate.execute(status -> {
+                Map<Long, Integer> drained = drainPendingDeltas();
+                trackInFlight(drained);
+                drained.forEach(this::persistDelta);
+                return drained;
+            });
+            if (batch != null && !batch.isEmpty()) {
+                logger.debug("Deltas de estoque gravados para {} produtos", batch.size());
+                // A reserva já descartou o cache, mas ele pode ter sido recarregado com o saldo anterior ao flush
+                batch.keySet().forEach(this::onFlushed);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Falha ao gravar deltas de estoque; nova tentativa no próximo ciclo", e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Escritas absolutas: grava o delta pendente do produto na transação de quem chamou, com a mesma conexão,
+    // sem flushLock nem REQUIRES_NEW, que exigiriam uma segunda conexão enquanto a primeira fica retida.
+    // Até a transação terminar o delta fica em inFlightDeltas, visível para reconstruções em outras threads
+    // (que não enxergam a escrita ainda não confirmada). Quem chama não consulta o contador do produto
+    // nesta transação, cuja leitura do banco já incluiria o delta, e o descarta após a conclusão.
+    public void flushInCurrentTransaction(Long productId) {
+        Map<Long, Integer> drained = new HashMap<>();
+        ReentrantLock lock = stripeFor(productId);
+        lock.lock();
+        try {
+            Integer delta = pendingDeltas.remove(productId);
+            if (delta != null && delta != 0) {
+                inFlightDeltas.merge(productId, delta, Integer::sum);
+                drained.put(productId, delta);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (drained.isEmpty()) {
+            return;
+        }
+
+        trackInFlight(drained);
+        persistDelta(productId, drained.get(productId));
+        onFlushed(productId);
+    }
+
+    // Fora de transação descarta imediatamente; dentro, também após o commit
+    private void onFlushed(Long productId) {
+        productCache.invalidate(productId);
+        productFacetIndex.markDirtyAfterCommit(productId);
+        productSuggester.markDirtyAfterCommit(productId);
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        logger.info("Gravando deltas de estoque pendentes antes do desligamento");
+        flush();
+    }
+
+    // Move os deltas pendentes para inFlightDeltas sob o lock listrado: nunca ficam fora dos dois mapas
+    private Map<Long, Integer> drainPendingDeltas() {
+        Map<Long, Integer> batch = new HashMap<>();
+        for (Long productId : pendingDeltas.keySet()) {
+            ReentrantLock lock = stripeFor(productId);
+            lock.lock();
+            try {
+                Integer delta = pendingDeltas.remove(productId);
+                if (delta != null && delta != 0) {
+                    inFlightDeltas.merge(productId, delta, Integer::sum);
+                    batch.put(productId, delta);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        return batch;
+    }
+
+    // Acompanha a transação atual: em commit, os produtos ficam marcados em committing; ao terminar,
+    // os deltas saem de inFlightDeltas (e voltam à fila se a transação não foi confirmada)
+    private void trackInFlight(Map<Long, Integer> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean markedCommitting;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                batch.keySet().forEach(productId -> {
+                    ReentrantLock lock = stripeFor(productId);
+                    lock.lock();
+                    try {
+                        committing.merge(productId, 1, Integer::sum);
+                    } finally {
+                        lock.unlock();
+                    }
+                });
+                markedCommitting = true;
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                batch.forEach((productId, delta) -> {
+                    ReentrantLock lock = stripeFor(productId);
+                    lock.lock();
+                    try {
+                        inFlightDeltas.compute(productId, (id, inFlight) -> {
+                            int remaining = (inFlight != null ? inFlight : 0) - delta;
+                            return remaining != 0 ? remaining : null;
+                        });
+                        if (status != STATUS_COMMITTED) {
+                            pendingDeltas.merge(productId, delta, Integer::sum);
+                        }
+                        if (markedCommitting) {
+                            committing.computeIfPresent(productId, (id, count) -> count > 1 ? count - 1 : null);
+                        }
+                        completedWrites.incrementAndGet();
+                    } finally {
+                        lock.unlock();
+                    }
+                });
+            }
+        });
+    }
+
+    private void persistDelta(Long productId, Integer delta) {
+        if (stockRepository.incrementByProductId(productId, delta) > 0) {
+            productRepository.adjustAvailableStock(productId, delta);
+            return;
+        }
+        // O UPDATE em products trava a linha do produto (0 linhas: produto inexistente); com o lock,
+        // um registro criado por outra transação já está visível e recebe o delta
+        if (delta > 0 && productRepository.adjustAvailableStock(productId, delta) > 0) {
+            if (stockRepository.incrementByProductId(productId, delta) > 0) {
+                return;
+            }
+            Stock stock = new Stock();
+            stock.setProduct(productRepository.getReferenceById(productId));
+            stock.setQuantity(delta);
+            stockRepository.save(stock);
+        } else {
+            logger.warn("Delta de estoque {} descartado: produto {} sem registro de estoque", delta, productId);
+        }
+    }
+
+    private void applyDelta(Long productId, int delta) {
+        while (true) {
+            ReentrantLock lock = stripeFor(productId);
+            lock.lock();
+            try {
+                Integer current = available.get(productId);
+                if (current != null) {
+                    available.put(productId, current + delta);
+                    pendingDeltas.merge(productId, delta, Integer::sum);
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+            rebuild(productId);
+        }
+    }
+
+    private void compensateOnRollback(Long productId, int reservedQuantity) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    applyDelta(productId, reservedQuantity);
+                }
+            }
+        });
+    }
+
+    private ReentrantLock stripeFor(Long productId) {
+        return stripes[Math.floorMod(productId.hashCode(), stripes.length)];
+    }
+}
@@ -1,65 +1,145 @@
 package com.java_avanade.spring_app.services;
 
+import com.java_avanade.spring_app.cache.ProductCache;
 import com.java_avanade.spring_app.dtos.StockDTO;
+import com.java_avanade.spring_app.dtos.StockQuantityDTO;
 import com.java_avanade.spring_app.exceptions.InsufficientStockException;
 import com.java_avanade.spring_app.exceptions.ResourceNotFoundException;
 import com.java_avanade.spring_app.models.Product;
 import com.java_avanade.spring_app.models.Stock;
 import com.java_avanade.spring_app.repositories.ProductRepository;
 import com.java_avanade.spring_app.repositories.StockRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import com.java_avanade.spring_app.search.ProductSuggester;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
 public class StockService {
 
+    // Mesmo débito condicional de StockRepository.decrementIfAvailable, em SQL para o batch JDBC
+    private static final String DECREMENT_IF_AVAILABLE_SQL =
+            "UPDATE stocks SET quantity = quantity - ? WHERE product_id = ? AND quantity >= ?";
+
+    private static final String ADJUST_AVAILABLE_STOCK_SQL =
+            "UPDATE products SET available_stock = available_stock + ? WHERE product_code = ?";
+
     @Autowired
     private StockRepository stockRepository;
 
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private ProductCache productCache;
+
+    @Autowired
+    private ProductFacetIndex productFacetIndex;
+
+    @Autowired
+    private ProductSuggester productSuggester;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Presente apenas com stock.engine.enabled=true
+    @Autowired(required = false)
+    private StockReservationEngine stockReservationEngine;
+
+    @Transactional(readOnly = true)
     public List<StockDTO> getAllStocks() {
         return stockRepository.findAll().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    @Transactional(readOnly = true)
     public StockDTO getStockById(Long id) {
         Stock stock = stockRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Estoque", "id", id));
         return convertToDTO(stock);
     }
 
+    @Transactional(readOnly = true)
     public List<StockDTO> getStocksByProductId(Long productId) {
         return stockRepository.findByProductId(productId).stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
 
+    // Sem transação própria: com o motor em memória o saldo vem do contador, sem ocupar uma conexão
     public Integer getTotalStockQuantityByProductId(Long productId) {
-        Integer totalQuantity = stockRepository.getTotalQuantityByProductId(productId);
+        if (stockReservationEngine != null) {
+            return stockReservationEngine.available(productId);
+        }
+        Integer totalQuantity = productRepository.findAvailableStockById(productId);
         return totalQuantity != null ? totalQuantity : 0;
     }
 
+    // Quantidades de vários produtos em uma única consulta agrupada, na ordem pedida
+    public List<StockQuantityDTO> getTotalStockQuantitiesByProductIds(List<Long> productIds) {
+        BatchIds.validate(productIds);
+        Map<Long, StockQuantityDTO> byProduct = new HashMap<>();
+        if (!productIds.isEmpty()) {
+            stockRepository.findTotalQuantitiesByProductIds(new HashSet<>(productIds))
+                    .forEach(quantity -> byProduct.put(quantity.getProductId(), quantity));
+        }
+
+        List<StockQuantityDTO> result = new ArrayList<>(productIds.size());
+        for (Long productId : productIds) {
+            StockQuantityDTO found = byProduct.get(productId);
+            if (found == null) {
+                result.add(new StockQuantityDTO(productId, false, null));
+            } else if (stockReservationEngine != null) {
+                // Com o motor em memória, o saldo atual está no contador e não no banco
+                result.add(new StockQuantityDTO(productId, true, stockReservationEngine.available(productId)));
+            } else {
+                result.add(new StockQuantityDTO(productId, true, found.getQuantity()));
+            }
+        }
+        return result;
+    }
+
     @Transactional
     public StockDTO addStock(Long productId, Integer quantity) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Produto", "id", productId));
+        onStockChanged(productId);
+
+        Long stockId = stockRepository.findStockIdByProductId(productId);
 
-        Optional<Stock> existingStock = stockRepository.findStockByProductId(productId);
+        if (stockId != null && stockReservationEngine != null) {
+            // Reposição pelo motor em memória; o delta é gravado no próximo flush
+            stockReservationEngine.release(productId, quantity);
+            return convertToDTO(stockId, product, stockReservationEngine.available(productId));
+        }
 
-        if (existingStock.isPresent()) {
-            Stock stock = existingStock.get();
-            stock.setQuantity(stock.getQuantity() + quantity);
-            Stock updatedStock = stockRepository.save(stock);
-            return convertToDTO(updatedStock);
+        if (stockId != null) {
+            // Incremento atômico no banco, sem ler-modificar-gravar a entidade
+            stockRepository.incrementQuantity(stockId, quantity);
+            productRepository.adjustAvailableStock(productId, quantity);
+            return convertToDTO(stockId, product, stockRepository.findQuantityById(stockId));
         } else {
+            prepareAbsoluteWrite(productId);
+            // O UPDATE em products trava a linha do produto: uma criação concorrente espera aqui e,
+            // ao prosseguir, encontra o registro já criado em vez de criar um segundo
+            productRepository.adjustAvailableStock(productId, quantity);
+            if (stockRepository.incrementByProductId(productId, quantity) > 0) {
+                Long existingStockId = stockRepository.findStockIdByProductId(productId);
+                return convertToDTO(existingStockId, product, stockRepository.findQuantityById(existingStockId));
+            }
             Stock newStock = new Stock();
             newStock.setProduct(product);
             newStock.setQuantity(quantity);
@@ -68,13 +148,31 @@ public class StockService {
         }
     }
 
+    // Devolução de itens do carrinho: um único UPDATE; cria o registro apenas se o produto não tiver estoque
+    @Transactional
+    public void releaseStock(Long productId, Integer quantity) {
+        onStockChanged(productId);
+        if (stockReservationEngine != null) {
+            stockReservationEngine.release(productId, quantity);
+            return;
+        }
+        if (stockRepository.incrementByProductId(productId, quantity) == 0) {
+            addStock(productId, quantity);
+        } else {
+            productRepository.adjustAvailableStock(productId, quantity);
+        }
+    }
+
     @Transactional
     public StockDTO updateStock(Long stockId, Integer newQuantity) {
         Stock stock = stockRepository.findById(stockId)
                 .orElseThrow(() -> new ResourceNotFoundException("Estoque", "id", stockId));
+        prepareAbsoluteWrite(stock.getProduct().getProductCode());
 
         stock.setQuantity(newQuantity);
         Stock updatedStock = stockRepository.save(stock);
+        // Escrita absoluta: recalcula a coluna a partir de stocks (o flush automático grava a linha antes)
+        productRepository.recomputeAvailableStock(stock.getProduct().getProductCode());
         return convertToDTO(updatedStock);
     }
 
@@ -82,26 +180,88 @@ public class StockService {
     public void removeStock(Long stockId) {
         Stock stock = stockRepository.findById(stockId)
                 .orElseThrow(() -> new ResourceNotFoundException("Estoque", "id", stockId));
+        prepareAbsoluteWrite(stock.getProduct().getProductCode());
 
         stockRepository.delete(stock);
+        productRepository.recomputeAvailableStock(stock.getProduct().getProductCode());
     }
 
     @Transactional
     public void checkAndReduceStock(Long productId, Integer requestedQuantity) {
-        Integer availableQuantity = getTotalStockQuantityByProductId(productId);
+        onStockChanged(productId);
+        if (stockReservationEngine != null) {
+            if (!stockReservationEngine.reserve(productId, requestedQuantity)) {
+                throw new InsufficientStockException(productId, requestedQuantity,
+                        stockReservationEngine.available(productId));
+            }
+            return;
+        }
 
-        if (availableQuantity < requestedQuantity) {
+        // Reserva condicional em um único UPDATE: nunca deixa o estoque negativo sob concorrência
+        if (stockRepository.decrementIfAvailable(productId, requestedQuantity) == 0) {
+            Integer availableQuantity = getTotalStockQuantityByProductId(productId);
             throw new InsufficientStockException(productId, requestedQuantity, availableQuantity);
         }
+        productRepository.adjustAvailableStock(productId, -requestedQuantity);
+    }
 
-        Optional<Stock> existingStock = stockRepository.findStockByProductId(productId);
-        if (existingStock.isPresent()) {
-            Stock stock = existingStock.get();
-            stock.setQuantity(stock.getQuantity() - requestedQuantity);
-            stockRepository.save(stock);
-        } else {
-            throw new ResourceNotFoundException("Estoque não encontrado para o produto ID: " + productId);
+    // Débito de vários produtos de uma vez: um batch JDBC em stocks e outro em products, em ordem de produto
+    // (mesma ordem de locks das alterações individuais). Falta em qualquer produto desfaz a transação inteira.
+    @Transactional
+    public void checkAndReduceStockBatch(Map<Long, Integer> requestedQuantities) {
+        Map<Long, Integer> ordered = new TreeMap<>(requestedQuantities);
+        if (stockReservationEngine != null) {
+            ordered.forEach(this::checkAndReduceStock);
+            return;
+        }
+        if (ordered.isEmpty()) {
+            return;
+        }
+        ordered.keySet().forEach(this::onStockChanged);
+
+        List<Map.Entry<Long, Integer>> entries = new ArrayList<>(ordered.entrySet());
+        int[] updated = jdbcTemplate.batchUpdate(DECREMENT_IF_AVAILABLE_SQL, entries, entries.size(),
+                (statement, entry) -> {
+                    statement.setInt(1, entry.getValue());
+                    statement.setLong(2, entry.getKey());
+                    statement.setInt(3, entry.getValue());
+                })[0];
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] != 1) {
+                Long productId = entries.get(i).getKey();
+                throw new InsufficientStockException(productId, entries.get(i).getValue(),
+                        getTotalStockQuantityByProductId(productId));
+            }
         }
+
+        jdbcTemplate.batchUpdate(ADJUST_AVAILABLE_STOCK_SQL, entries, entries.size(),
+                (statement, entry) -> {
+                    statement.setInt(1, -entry.getValue());
+                    statement.setLong(2, entry.getKey());
+                });
+    }
+
+    // Produto com estoque alterado: descarta o cache e atualiza as facetas e o ranking do autocompletar após o commit
+    private void onStockChanged(Long productId) {
+        productCache.invalidate(productId);
+        productFacetIndex.markDirtyAfterCommit(productId);
+        productSuggester.markDirtyAfterCommit(productId);
+    }
+
+    // Escritas absolutas: grava antes o delta pendente do produto, nesta mesma transação, e descarta o
+    // contador em memória após a conclusão
+    private void prepareAbsoluteWrite(Long productId) {
+        onStockChanged(productId);
+        if (stockReservationEngine == null) {
+            return;
+        }
+        stockReservationEngine.flushInCurrentTransaction(productId);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                stockReservationEngine.invalidate(productId);
+            }
+        });
     }
 
     public StockDTO convertToDTO(Stock stock) {
@@ -112,4 +272,13 @@ public class StockService {
         dto.setQuantity(stock.getQuantity());
         return dto;
     }
+
+    private StockDTO convertToDTO(Long stockId, Product product, Integer quantity) {
+        StockDTO dto = new StockDTO();
+        dto.setId(stockId);
+        dto.setProductId(product.getProductCode());
+        dto.setProductName(product.getName());
+        dto.setQuantity(quantity);
+        return dto;
+    }
 }
\ No newline at end of file
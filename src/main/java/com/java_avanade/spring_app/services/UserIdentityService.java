@@ -0,0 +1,107 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.exceptions.ResourceAlreadyExistsException;
+import com.java_avanade.spring_app.models.UserIdentity;
+import com.java_avanade.spring_app.repositories.UserIdentityRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Mantém o registro unificado de identidades (user_identities).
+ * Os métodos de escrita exigem a transação de quem altera a entidade de origem,
+ * para que o registro e as tabelas users/clients/affiliates nunca divirjam.
+ */
+@Service
+public class UserIdentityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserIdentityService.class);
+
+    @Autowired
+    private UserIdentityRepository userIdentityRepository;
+
+    @Transactional(readOnly = true)
+    public Optional<UserIdentity> findByUsername(String username) {
+        return userIdentityRepository.findByUsername(username);
+    }
+
+    // Verifica username e email em uma única consulta sobre os três tipos de usuário
+    @Transactional(readOnly = true)
+    public void assertAvailable(String username, String email) {
+        assertAvailable(null, username, email);
+    }
+
+    // Ignora a própria identidade (identityId) ao verificar uma alteração de username ou email
+    private void assertAvailable(Long identityId, String username, String email) {
+        List<UserIdentity> conflicts = userIdentityRepository.findByUsernameOrEmail(username, email).stream()
+                .filter(identity -> !identity.getId().equals(identityId))
+                .toList();
+        for (UserIdentity identity : conflicts) {
+            if (username != null && username.equals(identity.getUsername())) {
+                logger.warn("Tentativa de registro com username já existente: {}", username);
+                throw new ResourceAlreadyExistsException("Usuário", "username", username);
+            }
+        }
+        if (!conflicts.isEmpty()) {
+            logger.warn("Tentativa de registro com email já existente: {}", email);
+            throw new ResourceAlreadyExistsException("Usuário", "email", email);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public UserIdentity register(String userType, Long entityId, String username, String email) {
+        UserIdentity identity = new UserIdentity(null, username, email, userType, entityId);
+        UserIdentity saved = saveAndFlush(identity);
+        logger.debug("Identidade registrada: {} ({} ID {})", username, userType, entityId);
+        return saved;
+    }
+
+    // Sincroniza username/email após a atualização da entidade de origem
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void update(String userType, Long entityId, String username, String email) {
+        Optional<UserIdentity> identityOptional = userIdentityRepository.findByUserTypeAndEntityId(userType, entityId);
+        if (identityOptional.isEmpty()) {
+            logger.warn("Identidade ausente para {} ID {}, recriando registro", userType, entityId);
+            register(userType, entityId, username, email);
+            return;
+        }
+
+        UserIdentity identity = identityOptional.get();
+        if (!Objects.equals(identity.getUsername(), username) || !Objects.equals(identity.getEmail(), email)) {
+            // As tabelas de origem não têm restrição única entre si: a verificação é feita aqui
+            assertAvailable(identity.getId(), username, email);
+            identity.setUsername(username);
+            identity.setEmail(email);
+            saveAndFlush(identity);
+            logger.debug("Identidade atualizada: {} ({} ID {})", username, userType, entityId);
+        }
+    }
+
+    // Grava de imediato: uma violação das restrições únicas (alteração concorrente com os mesmos dados)
+    // vira 409 aqui, em vez de surgir como erro 500 no commit
+    private UserIdentity saveAndFlush(UserIdentity identity) {
+        try {
+            return userIdentityRepository.saveAndFlush(identity);
+        } catch (DataIntegrityViolationException e) {
+            logger.warn("Username ou email já em uso: {} / {}", identity.getUsername(), identity.getEmail());
+            throw new ResourceAlreadyExistsException("Usuário já existe com o username ou email informado", e);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void remove(String userType, Long entityId) {
+        userIdentityRepository.findByUserTypeAndEntityId(userType, entityId)
+                .ifPresent(identity -> {
+                    userIdentityRepository.delete(identity);
+                    logger.debug("Identidade removida: {} ({} ID {})", identity.getUsername(), userType, entityId);
+                });
+    }
+}
@@ -0,0 +1,7 @@
+-- Revogações de JWT compartilhadas entre as instâncias: tokens de username emitidos antes de revoked_before_ms são recusados
+CREATE TABLE jwt_revocations (
+    username VARCHAR(255) PRIMARY KEY,
+    revoked_before_ms BIGINT NOT NULL
+);
+
+CREATE INDEX idx_jwt_revocations_revoked_before ON jwt_revocations (revoked_before_ms);
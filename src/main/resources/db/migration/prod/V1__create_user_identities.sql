@@ -0,0 +1,55 @@
+-- Pré-verificação do backfill: users, clients e affiliates não têm restrição única entre si nem email
+-- obrigatório. Um username ou email repetido entre as tabelas, ou um email nulo, violaria as restrições
+-- de user_identities; a migração falha listando os registros a corrigir antes de tentar de novo.
+DO $$
+DECLARE
+    conflicts TEXT;
+BEGIN
+    WITH identities AS (
+        SELECT username, email, 'ADMIN' AS user_type, id FROM users
+        UNION ALL
+        SELECT username, email, 'CLIENT', id FROM clients
+        UNION ALL
+        SELECT username, email, 'AFFILIATE', id FROM affiliates
+    ),
+    problems AS (
+        SELECT 'email nulo' AS problem, user_type, id, username, email
+        FROM identities
+        WHERE email IS NULL
+        UNION ALL
+        SELECT 'username duplicado', user_type, id, username, email
+        FROM identities
+        WHERE username IN (SELECT username FROM identities GROUP BY username HAVING COUNT(*) > 1)
+        UNION ALL
+        SELECT 'email duplicado', user_type, id, username, email
+        FROM identities
+        WHERE email IN (SELECT email FROM identities GROUP BY email HAVING COUNT(*) > 1)
+    )
+    SELECT string_agg(format('%s: %s ID %s (username=%s, email=%s)', problem, user_type, id,
+                             COALESCE(username, '<nulo>'), COALESCE(email, '<nulo>')),
+                      E'\n' ORDER BY problem, username, email, user_type, id)
+    INTO conflicts
+    FROM problems;
+
+    IF conflicts IS NOT NULL THEN
+        RAISE EXCEPTION E'user_identities: corrija os registros conflitantes antes de migrar:\n%', conflicts;
+    END IF;
+END $$;
+
+-- Registro unificado de identidades: username/email -> (tipo de usuário, ID da entidade)
+CREATE TABLE user_identities (
+    id BIGSERIAL PRIMARY KEY,
+    username VARCHAR(255) UNIQUE,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    user_type VARCHAR(255) NOT NULL,
+    entity_id BIGINT NOT NULL,
+    CONSTRAINT uk_user_identities_type_entity UNIQUE (user_type, entity_id)
+);
+
+-- Backfill a partir das três tabelas de usuários
+INSERT INTO user_identities (username, email, user_type, entity_id)
+SELECT username, email, 'ADMIN', id FROM users
+UNION ALL
+SELECT username, email, 'CLIENT', id FROM clients
+UNION ALL
+SELECT username, email, 'AFFILIATE', id FROM affiliates;
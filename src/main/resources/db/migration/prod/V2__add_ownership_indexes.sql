@@ -0,0 +1,7 @@
+-- Índices nas chaves estrangeiras usadas pelas verificações de propriedade (SecurityService)
+CREATE INDEX IF NOT EXISTS idx_carts_order_id ON carts (order_id);
+CREATE INDEX IF NOT EXISTS idx_carts_product_id ON carts (product_id);
+CREATE INDEX IF NOT EXISTS idx_checkouts_product_id ON checkouts (product_id);
+CREATE INDEX IF NOT EXISTS idx_stocks_product_id ON stocks (product_id);
+CREATE INDEX IF NOT EXISTS idx_products_affiliate_id ON products (affiliate_id);
+CREATE INDEX IF NOT EXISTS idx_orders_client_id ON orders (client_id);
@@ -0,0 +1,19 @@
+-- Reservas temporárias de estoque por item de carrinho
+CREATE TABLE stock_holds (
+    id BIGSERIAL PRIMARY KEY,
+    cart_item_id BIGINT NOT NULL UNIQUE,
+    order_id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INTEGER NOT NULL,
+    expires_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_stock_holds_expires_at ON stock_holds (expires_at);
+CREATE INDEX idx_stock_holds_order_id ON stock_holds (order_id);
+
+-- Itens de pedidos ainda abertos passam a ter reserva com prazo, liberada pelo sweeper se o pedido for abandonado
+INSERT INTO stock_holds (cart_item_id, order_id, product_id, quantity, expires_at)
+SELECT c.id, c.order_id, c.product_id, c.quantity, NOW() + INTERVAL '30 minutes'
+FROM carts c
+JOIN orders o ON o.order_id = c.order_id
+WHERE o.status = 'OPEN' AND c.product_id IS NOT NULL;
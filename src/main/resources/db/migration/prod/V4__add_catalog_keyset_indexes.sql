@@ -0,0 +1,4 @@
+-- Índices compostos para a paginação por keyset do catálogo (ordenação + desempate por product_code)
+CREATE INDEX IF NOT EXISTS idx_products_price_code ON products (price, product_code);
+CREATE INDEX IF NOT EXISTS idx_products_name_code ON products (name, product_code);
+CREATE INDEX IF NOT EXISTS idx_products_type_code ON products (product_type, product_code);
@@ -0,0 +1,7 @@
+-- Sequências para os IDs de produtos e estoques (allocationSize = 50 no Hibernate, otimizador pooled).
+-- O primeiro valor é MAX + 50: o bloco alocado começa logo após o maior ID existente.
+CREATE SEQUENCE IF NOT EXISTS products_seq INCREMENT BY 50;
+SELECT setval('products_seq', COALESCE((SELECT MAX(product_code) FROM products), 0) + 50, false);
+
+CREATE SEQUENCE IF NOT EXISTS stocks_seq INCREMENT BY 50;
+SELECT setval('stocks_seq', COALESCE((SELECT MAX(id) FROM stocks), 0) + 50, false);
@@ -0,0 +1,5 @@
+-- Estoque disponível desnormalizado em products (soma de stocks), mantido pelo StockService
+ALTER TABLE products ADD COLUMN IF NOT EXISTS available_stock INTEGER NOT NULL DEFAULT 0;
+
+UPDATE products p
+SET available_stock = COALESCE((SELECT SUM(s.quantity) FROM stocks s WHERE s.product_id = p.product_code), 0);
@@ -0,0 +1,2 @@
+-- Paginação por keyset do catálogo de cada afiliado (filtro por afiliado, ordem por product_code)
+CREATE INDEX IF NOT EXISTS idx_products_affiliate_code ON products (affiliate_id, product_code);
@@ -0,0 +1,16 @@
+-- Preço unitário e nome do produto gravados no item do carrinho no momento da inclusão
+ALTER TABLE carts ADD COLUMN IF NOT EXISTS unit_price NUMERIC(38, 2);
+ALTER TABLE carts ADD COLUMN IF NOT EXISTS product_name VARCHAR(255);
+
+-- Itens existentes recebem o preço e o nome atuais do produto
+UPDATE carts c
+SET unit_price = p.price, product_name = p.name
+FROM products p
+WHERE p.product_code = c.product_id AND c.unit_price IS NULL;
+
+-- Itens sem produto associado não têm de onde copiar os valores
+UPDATE carts SET unit_price = 0 WHERE unit_price IS NULL;
+UPDATE carts SET product_name = '' WHERE product_name IS NULL;
+
+ALTER TABLE carts ALTER COLUMN unit_price SET NOT NULL;
+ALTER TABLE carts ALTER COLUMN product_name SET NOT NULL;
@@ -0,0 +1,20 @@
+-- Um único registro de estoque por produto: a quantidade dos registros duplicados é somada ao de menor id
+UPDATE stocks s
+SET quantity = d.total_quantity
+FROM (SELECT product_id, MIN(id) AS keep_id, SUM(quantity) AS total_quantity
+      FROM stocks
+      WHERE product_id IS NOT NULL
+      GROUP BY product_id
+      HAVING COUNT(*) > 1) d
+WHERE s.id = d.keep_id;
+
+DELETE FROM stocks s
+USING (SELECT product_id, MIN(id) AS keep_id
+       FROM stocks
+       WHERE product_id IS NOT NULL
+       GROUP BY product_id) k
+WHERE s.product_id = k.product_id AND s.id <> k.keep_id;
+
+-- A restrição única também serve de índice para as buscas por produto
+ALTER TABLE stocks ADD CONSTRAINT uk_stocks_product_id UNIQUE (product_id);
+DROP INDEX IF EXISTS idx_stocks_product_id;
@@ -0,0 +1,66 @@
+package com.java_avanade.spring_app.config.jwt;
+
+import com.java_avanade.spring_app.repositories.JwtRevocationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Uma revogação feita em uma instância vale nas demais, que compartilham apenas o banco.
+ */
+@DataJpaTest(properties = "jwt.revocation.cache-ttl-ms=0")
+@ActiveProfiles("test")
+@Import(JwtRevocationList.class)
+class JwtRevocationListTest {
+
+    @Autowired
+    private JwtRevocationList thisNode;
+
+    @Autowired
+    private JwtRevocationRepository jwtRevocationRepository;
+
+    private JwtRevocationList otherNode;
+
+    @BeforeEach
+    void setUp() {
+        otherNode = new JwtRevocationList();
+        ReflectionTestUtils.setField(otherNode, "jwtRevocationRepository", jwtRevocationRepository);
+        ReflectionTestUtils.setField(otherNode, "jwtExpirationInMs", 10800000L);
+        ReflectionTestUtils.setField(otherNode, "cacheMaxSize", 100);
+        ReflectionTestUtils.setField(otherNode, "cacheTtlMs", 0L);
+        otherNode.initCache();
+    }
+
+    @Test
+    void revocationOnOneNodeRejectsOlderTokensOnAnother() {
+        Date issuedBefore = new Date(System.currentTimeMillis() - 1000);
+        assertFalse(otherNode.isRevoked("cliente", issuedBefore));
+
+        thisNode.revokeAll("cliente");
+
+        assertTrue(otherNode.isRevoked("cliente", issuedBefore));
+        assertFalse(otherNode.isRevoked("cliente", new Date(System.currentTimeMillis() + 1000)));
+        assertFalse(otherNode.isRevoked("outro", issuedBefore));
+    }
+
+    @Test
+    void laterRevocationAdvancesTheSharedCutoff() {
+        thisNode.revokeAll("cliente");
+        long firstCutoff = jwtRevocationRepository.findRevokedBeforeMillis("cliente").orElseThrow();
+
+        otherNode.revokeAll("cliente");
+
+        assertEquals(1, jwtRevocationRepository.count());
+        assertTrue(jwtRevocationRepository.findRevokedBeforeMillis("cliente").orElseThrow() >= firstCutoff);
+    }
+}
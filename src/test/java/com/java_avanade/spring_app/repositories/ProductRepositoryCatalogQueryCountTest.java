@@ -0,0 +1,119 @@
+package com.java_avanade.spring_app.repositories;
+
+import com.java_avanade.spring_app.dtos.ProductDTO;
+import com.java_avanade.spring_app.models.Affiliate;
+import com.java_avanade.spring_app.models.Product;
+import com.java_avanade.spring_app.models.Stock;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * As listagens do catálogo montam produto, afiliado e estoque em uma única consulta:
+ * o número de comandos SQL não cresce com o tamanho do catálogo.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+class ProductRepositoryCatalogQueryCountTest {
+
+    private static final int N = 20;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private Affiliate affiliate;
+
+    private final List<Long> productCodes = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        affiliate = new Affiliate();
+        affiliate.setName("Afiliado");
+        affiliate.setEmail("afiliado@teste.com");
+        affiliate.setUsername("afiliado");
+        affiliate.setPassword("senha");
+        entityManager.persist(affiliate);
+    }
+
+    @Test
+    void affiliateCatalogUsesSameStatementCountForTenTimesTheProducts() {
+        seedProducts(N);
+        long smallCatalog = countStatements(N, () -> productRepository.findCatalogByAffiliateId(affiliate.getId()));
+
+        seedProducts(10 * N - N);
+        long largeCatalog = countStatements(10 * N, () -> productRepository.findCatalogByAffiliateId(affiliate.getId()));
+
+        assertEquals(1, smallCatalog);
+        assertEquals(smallCatalog, largeCatalog);
+    }
+
+    @Test
+    void catalogByIdsUsesSameStatementCountForTenTimesTheProducts() {
+        seedProducts(N);
+        long smallCatalog = countStatements(N, () -> productRepository.findCatalogByIds(productCodes));
+
+        seedProducts(10 * N - N);
+        long largeCatalog = countStatements(10 * N, () -> productRepository.findCatalogByIds(productCodes));
+
+        assertEquals(1, smallCatalog);
+        assertEquals(smallCatalog, largeCatalog);
+    }
+
+    private long countStatements(int expectedSize, Supplier<List<ProductDTO>> listing) {
+        statistics.clear();
+        List<ProductDTO> products = listing.get();
+        assertEquals(expectedSize, products.size());
+        products.forEach(product -> {
+            assertEquals(affiliate.getName(), product.getAffiliateName());
+            assertEquals(7, product.getAvailableStock());
+        });
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void seedProducts(int count) {
+        for (int i = 0; i < count; i++) {
+            Product product = new Product();
+            product.setName("Produto " + productCodes.size());
+            product.setDescription("Descrição");
+            product.setPrice(new BigDecimal("10.00"));
+            product.setProductType("TIPO");
+            product.setProductChoice("ESCOLHA");
+            product.setAffiliate(affiliate);
+            product.setAvailableStock(7);
+            entityManager.persist(product);
+
+            Stock stock = new Stock();
+            stock.setProduct(product);
+            stock.setQuantity(7);
+            entityManager.persist(stock);
+
+            productCodes.add(product.getProductCode());
+        }
+        // Nada pendente na sessão: a listagem contada não dispara flush nem encontra entidades já carregadas
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
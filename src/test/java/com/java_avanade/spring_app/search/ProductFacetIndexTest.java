@@ -0,0 +1,105 @@
+package com.java_avanade.spring_app.search;
+
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex.FacetQuery;
+import com.java_avanade.spring_app.search.ProductFacetIndex.FacetResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A paginação por cursor percorre os produtos em ordem de productCode mesmo quando produtos
+ * novos chegam fora de ordem (códigos alocados em blocos por instância).
+ */
+class ProductFacetIndexTest {
+
+    private static final FacetQuery ALL = new FacetQuery(null, null, null, null, false);
+
+    private final Map<Long, FacetSource> database = new TreeMap<>();
+
+    private ProductFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        save(10L);
+        save(20L);
+        save(30L);
+
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findFacetSources(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            Long afterCode = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return database.values().stream()
+                    .filter(source -> source.productCode() > afterCode)
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+        when(repository.findFacetSourcesByIds(any())).thenAnswer(invocation -> {
+            Collection<Long> productCodes = invocation.getArgument(0);
+            return database.values().stream()
+                    .filter(source -> productCodes.contains(source.productCode()))
+                    .toList();
+        });
+
+        index = new ProductFacetIndex("50,100");
+        ReflectionTestUtils.setField(index, "productRepository", repository);
+        ReflectionTestUtils.setField(index, "rebuildBatchSize", 2);
+        index.rebuild();
+    }
+
+    @Test
+    void newProductsAppendedInCodeOrderPageCorrectly() {
+        save(50L);
+        save(40L);
+        index.markDirtyAfterCommit(50L);
+        index.markDirtyAfterCommit(40L);
+        index.refreshDirty();
+
+        assertEquals(List.of(10L, 20L, 30L, 40L, 50L), walk(2));
+    }
+
+    @Test
+    void newProductBelowLastOrdinalDoesNotBreakPaging() {
+        save(60L);
+        index.markDirtyAfterCommit(60L);
+        index.refreshDirty();
+
+        // Código alocado por outra instância, menor que o último já indexado
+        save(25L);
+        index.markDirtyAfterCommit(25L);
+        index.refreshDirty();
+
+        assertEquals(List.of(10L, 20L, 25L, 30L, 60L), walk(2));
+        assertEquals(5, index.filter(ALL, null, 10).total());
+    }
+
+    private List<Long> walk(int pageSize) {
+        List<Long> seen = new ArrayList<>();
+        Long afterCode = null;
+        FacetResult page;
+        do {
+            page = index.filter(ALL, afterCode, pageSize);
+            seen.addAll(page.productCodes());
+            afterCode = page.productCodes().isEmpty() ? null : page.productCodes().get(page.productCodes().size() - 1);
+        } while (page.hasMore());
+        return seen;
+    }
+
+    private void save(Long productCode) {
+        database.put(productCode, new FacetSource(productCode, "Vestuário", "Nova", new BigDecimal("25.00"), 1));
+    }
+}
@@ -0,0 +1,123 @@
+package com.java_avanade.spring_app.search;
+
+import com.java_avanade.spring_app.dtos.SuggestionDTO;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A atualização incremental por produto deve produzir as mesmas sugestões que uma reconstrução completa.
+ */
+class ProductSuggesterTest {
+
+    private static final List<String> PREFIXES = List.of("c", "ca", "cam", "camiseta", "azul", "a", "v", "cal", "t");
+
+    private final Map<Long, SuggestionSource> database = new TreeMap<>();
+
+    private ProductSuggester incremental;
+
+    @BeforeEach
+    void setUp() {
+        save(1L, "Camiseta Azul", "Vestuário", 10);
+        save(2L, "Camiseta Verde", "Vestuário", 5);
+        save(3L, "Calça Azul", "Vestuário", 7);
+        save(4L, "Caneca", "Cozinha", 2);
+        save(5L, "Azul Turquesa", "Tinta", 1);
+        save(6L, "Camiseta Azul", "Vestuário", 3);
+
+        incremental = newSuggester();
+        incremental.rebuild();
+    }
+
+    @Test
+    void stockChangeReordersLikeFullRebuild() {
+        save(4L, "Caneca", "Cozinha", 50);
+        applyAndCompare(4L);
+    }
+
+    @Test
+    void renameRemoveAndCreateMatchFullRebuild() {
+        save(2L, "Camisa Verde", "Vestuário", 5);
+        database.remove(3L);
+        save(7L, "Azul Marinho", "Tinta", 20);
+        applyAndCompare(2L, 3L, 7L);
+    }
+
+    @Test
+    void removingOneOfTwoProductsWithSameNameKeepsTheRemainingStock() {
+        database.remove(1L);
+        applyAndCompare(1L);
+
+        List<SuggestionDTO> suggestions = incremental.suggest("camiseta a", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals(3, suggestions.get(0).getAvailableStock());
+    }
+
+    @Test
+    void removingEveryProductEmptiesTheTrie() {
+        List<Long> all = List.copyOf(database.keySet());
+        database.clear();
+        applyAndCompare(all.toArray(Long[]::new));
+        assertTrue(incremental.suggest("c", 10).isEmpty());
+    }
+
+    private void applyAndCompare(Long... productCodes) {
+        for (Long productCode : productCodes) {
+            incremental.markDirtyAfterCommit(productCode);
+        }
+        incremental.applyDirty();
+
+        ProductSuggester full = newSuggester();
+        full.rebuild();
+        for (String prefix : PREFIXES) {
+            assertEquals(describe(full.suggest(prefix, 10)), describe(incremental.suggest(prefix, 10)),
+                    "prefixo " + prefix);
+        }
+    }
+
+    private List<String> describe(List<SuggestionDTO> suggestions) {
+        return suggestions.stream()
+                .map(s -> s.getKind() + ":" + s.getText() + ":" + s.getAvailableStock())
+                .toList();
+    }
+
+    private void save(Long productCode, String name, String productType, int availableStock) {
+        database.put(productCode, new SuggestionSource(productCode, name, productType, availableStock));
+    }
+
+    private ProductSuggester newSuggester() {
+        ProductRepository repository = mock(ProductRepository.class);
+        when(repository.findSuggestionSources(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            Long afterCode = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return database.values().stream()
+                    .filter(source -> source.productCode() > afterCode)
+                    .limit(pageable.getPageSize())
+                    .toList();
+        });
+        when(repository.findSuggestionSourcesByIds(any())).thenAnswer(invocation -> {
+            Collection<Long> productCodes = invocation.getArgument(0);
+            return productCodes.stream().map(database::get).filter(source -> source != null).toList();
+        });
+
+        ProductSuggester suggester = new ProductSuggester();
+        ReflectionTestUtils.setField(suggester, "productRepository", repository);
+        ReflectionTestUtils.setField(suggester, "topN", 3);
+        ReflectionTestUtils.setField(suggester, "rebuildBatchSize", 2);
+        return suggester;
+    }
+}
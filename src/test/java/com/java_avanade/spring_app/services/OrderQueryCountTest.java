@@ -0,0 +1,218 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.dtos.CheckoutDTO;
+import com.java_avanade.spring_app.dtos.OrderDTO;
+import com.java_avanade.spring_app.models.*;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * As leituras de pedidos e checkouts montam o DTO com um número fixo de comandos SQL,
+ * que não cresce com a quantidade de pedidos, itens ou checkouts.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import({OrderService.class, CartService.class, CheckoutService.class})
+class OrderQueryCountTest {
+
+    private static final int N = 5;
+    private static final int ITEMS_PER_ORDER = 2;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private CheckoutService checkoutService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private StockHoldService stockHoldService;
+
+    @MockitoBean
+    private StockService stockService;
+
+    @MockitoBean
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private Client client;
+    private Affiliate affiliate;
+    private Product product;
+
+    private final List<Order> orders = new ArrayList<>();
+    private final List<Checkout> checkouts = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        client = new Client();
+        client.setName("Cliente");
+        client.setEmail("cliente@teste.com");
+        client.setUsername("cliente");
+        client.setPassword("senha");
+        entityManager.persist(client);
+
+        affiliate = new Affiliate();
+        affiliate.setName("Afiliado");
+        affiliate.setEmail("afiliado@teste.com");
+        affiliate.setUsername("afiliado");
+        affiliate.setPassword("senha");
+        entityManager.persist(affiliate);
+
+        product = new Product();
+        product.setName("Produto");
+        product.setDescription("Descrição");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setProductType("TIPO");
+        product.setProductChoice("ESCOLHA");
+        product.setAffiliate(affiliate);
+        entityManager.persist(product);
+    }
+
+    @Test
+    void clientOrdersUseSameStatementCountForTenTimesTheOrders() {
+        seedOrders(N);
+        long fewOrders = countOrderStatements(N, () -> orderService.getOrdersByClientId(client.getId()));
+
+        seedOrders(10 * N - N);
+        long manyOrders = countOrderStatements(10 * N, () -> orderService.getOrdersByClientId(client.getId()));
+
+        // Pedidos com cliente e itens + pedidos que já possuem checkout
+        assertEquals(2, fewOrders);
+        assertEquals(fewOrders, manyOrders);
+    }
+
+    @Test
+    void affiliateOrdersUseSameStatementCountForTenTimesTheOrders() {
+        seedOrders(N);
+        long fewOrders = countOrderStatements(N, () -> orderService.getOrdersByAffiliateId(affiliate.getId()));
+
+        seedOrders(10 * N - N);
+        long manyOrders = countOrderStatements(10 * N, () -> orderService.getOrdersByAffiliateId(affiliate.getId()));
+
+        assertEquals(2, fewOrders);
+        assertEquals(fewOrders, manyOrders);
+    }
+
+    @Test
+    void orderDetailRunsTwoStatements() {
+        seedOrders(2);
+
+        for (Order order : orders) {
+            statistics.clear();
+            OrderDTO dto = orderService.getOrderById(order.getOrderId());
+            assertOrder(dto);
+            assertEquals(2, statistics.getPrepareStatementCount());
+        }
+    }
+
+    @Test
+    void checkoutViewsUseSameStatementCountForTenTimesTheCheckouts() {
+        seedOrders(N);
+        statistics.clear();
+        assertCheckout(checkoutService.getCheckoutById(checkouts.get(0).getId()));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        long fewCheckouts = countCheckoutStatements(() -> checkoutService.getCheckoutsByClientId(client.getId()));
+
+        seedOrders(10 * N - N);
+        long manyCheckouts = countCheckoutStatements(() -> checkoutService.getCheckoutsByClientId(client.getId()));
+
+        assertEquals(1, fewCheckouts);
+        assertEquals(fewCheckouts, manyCheckouts);
+    }
+
+    private long countOrderStatements(int expectedSize, Supplier<List<OrderDTO>> listing) {
+        statistics.clear();
+        List<OrderDTO> dtos = listing.get();
+        assertEquals(expectedSize, dtos.size());
+        dtos.forEach(this::assertOrder);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private long countCheckoutStatements(Supplier<List<CheckoutDTO>> listing) {
+        statistics.clear();
+        List<CheckoutDTO> dtos = listing.get();
+        assertEquals(checkouts.size(), dtos.size());
+        dtos.forEach(this::assertCheckout);
+        return statistics.getPrepareStatementCount();
+    }
+
+    private void assertOrder(OrderDTO dto) {
+        assertEquals(client.getName(), dto.getClientName());
+        assertEquals(ITEMS_PER_ORDER, dto.getCartItems().size());
+        dto.getCartItems().forEach(item -> assertEquals(product.getProductCode(), item.getProductId()));
+        // Pedidos de posição par foram finalizados em seedOrders
+        boolean expectedCheckout = checkouts.stream()
+                .anyMatch(checkout -> checkout.getOrder().getOrderId().equals(dto.getOrderId()));
+        assertEquals(expectedCheckout, dto.getHasCheckout());
+    }
+
+    private void assertCheckout(CheckoutDTO dto) {
+        assertEquals(client.getName(), dto.getClientName());
+    }
+
+    private void seedOrders(int count) {
+        for (int i = 0; i < count; i++) {
+            Order order = new Order();
+            order.setClient(client);
+            order.setOrderDate(LocalDateTime.now());
+            order.setStatus("OPEN");
+            order.setTotalAmount(new BigDecimal("20.00"));
+            entityManager.persist(order);
+
+            for (int j = 0; j < ITEMS_PER_ORDER; j++) {
+                Cart cartItem = new Cart();
+                cartItem.setOrder(order);
+                cartItem.setProduct(product);
+                cartItem.setQuantity(1);
+                cartItem.setUnitPrice(product.getPrice());
+                cartItem.setProductName(product.getName());
+                cartItem.setPaymentType("PIX");
+                entityManager.persist(cartItem);
+            }
+
+            if (orders.size() % 2 == 0) {
+                Checkout checkout = new Checkout();
+                checkout.setOrder(order);
+                checkout.setProduct(product);
+                checkout.setQuantity(ITEMS_PER_ORDER);
+                checkout.setTotalPrice(order.getTotalAmount());
+                checkout.setPaymentStatus("PENDING");
+                checkout.setCheckoutDate(LocalDateTime.now());
+                checkout.setShippingAddress("Rua Teste, 1");
+                entityManager.persist(checkout);
+                checkouts.add(checkout);
+            }
+            orders.add(order);
+        }
+        // Nada pendente na sessão: as leituras contadas não disparam flush nem encontram entidades já carregadas
+        entityManager.flush();
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.models.*;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Cada verificação de propriedade do SecurityService deve custar exatamente uma consulta
+ * (exists), tanto quando concede quanto quando nega o acesso.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ActiveProfiles("test")
+@Import(SecurityService.class)
+class SecurityServiceQueryCountTest {
+
+    @Autowired
+    private SecurityService securityService;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private CustomUserDetailsService customUserDetailsService;
+
+    @MockitoBean
+    private AuthorizationContext authorizationContext;
+
+    private Statistics statistics;
+
+    private Client client;
+    private Affiliate affiliate;
+    private Product product;
+    private Stock stock;
+    private Order order;
+    private Cart cartItem;
+    private Checkout checkout;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        client = new Client();
+        client.setName("Cliente");
+        client.setEmail("cliente@teste.com");
+        client.setUsername("cliente");
+        client.setPassword("senha");
+        entityManager.persist(client);
+
+        affiliate = new Affiliate();
+        affiliate.setName("Afiliado");
+        affiliate.setEmail("afiliado@teste.com");
+        affiliate.setUsername("afiliado");
+        affiliate.setPassword("senha");
+        entityManager.persist(affiliate);
+
+        product = new Product();
+        product.setName("Produto");
+        product.setDescription("Descrição");
+        product.setPrice(new BigDecimal("10.00"));
+        product.setProductType("TIPO");
+        product.setProductChoice("ESCOLHA");
+        product.setAffiliate(affiliate);
+        entityManager.persist(product);
+
+        stock = new Stock();
+        stock.setProduct(product);
+        stock.setQuantity(5);
+        entityManager.persist(stock);
+
+        order = new Order();
+        order.setClient(client);
+        order.setOrderDate(LocalDateTime.now());
+        order.setStatus("PENDING");
+        order.setTotalAmount(new BigDecimal("10.00"));
+        entityManager.persist(order);
+
+        cartItem = new Cart();
+        cartItem.setOrder(order);
+        cartItem.setProduct(product);
+        cartItem.setQuantity(1);
+        cartItem.setUnitPrice(product.getPrice());
+        cartItem.setProductName(product.getName());
+        cartItem.setPaymentType("PIX");
+        entityManager.persist(cartItem);
+
+        checkout = new Checkout();
+        checkout.setOrder(order);
+        checkout.setProduct(product);
+        checkout.setQuantity(1);
+        checkout.setTotalPrice(new BigDecimal("10.00"));
+        checkout.setPaymentStatus("PENDING");
+        checkout.setCheckoutDate(LocalDateTime.now());
+        checkout.setShippingAddress("Rua Teste, 1");
+        entityManager.persist(checkout);
+
+        // Nada pendente na sessão: as consultas contadas não disparam flush
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void clientChecksRunOneStatementEach() {
+        Authentication owner = authentication("CLIENT", client.getId());
+        Authentication stranger = authentication("CLIENT", client.getId() + 1000);
+
+        assertSingleStatement(true, () -> securityService.isOrderOwner(order.getOrderId(), owner));
+        assertSingleStatement(false, () -> securityService.isOrderOwner(order.getOrderId(), stranger));
+        assertSingleStatement(true, () -> securityService.isCartItemOwner(cartItem.getId(), owner));
+        assertSingleStatement(false, () -> securityService.isCartItemOwner(cartItem.getId(), stranger));
+        assertSingleStatement(true, () -> securityService.isCheckoutOwner(checkout.getId(), owner));
+        assertSingleStatement(false, () -> securityService.isCheckoutOwner(checkout.getId(), stranger));
+    }
+
+    @Test
+    void affiliateChecksRunOneStatementEach() {
+        Authentication owner = authentication("AFFILIATE", affiliate.getId());
+        Authentication stranger = authentication("AFFILIATE", affiliate.getId() + 1000);
+
+        assertSingleStatement(true, () -> securityService.isOrderContainsAffiliateProdut(order.getOrderId(), owner));
+        assertSingleStatement(false, () -> securityService.isOrderContainsAffiliateProdut(order.getOrderId(), stranger));
+        assertSingleStatement(true, () -> securityService.isProductOwner(product.getProductCode(), owner));
+        assertSingleStatement(false, () -> securityService.isProductOwner(product.getProductCode(), stranger));
+        assertSingleStatement(true, () -> securityService.isStockOwner(stock.getId(), owner));
+        assertSingleStatement(false, () -> securityService.isStockOwner(stock.getId(), stranger));
+        assertSingleStatement(true, () -> securityService.isCheckoutContainsAffiliateProduct(checkout.getId(), owner));
+        assertSingleStatement(false, () -> securityService.isCheckoutContainsAffiliateProduct(checkout.getId(), stranger));
+    }
+
+    private void assertSingleStatement(boolean expected, BooleanSupplier check) {
+        statistics.clear();
+        assertEquals(expected, check.getAsBoolean());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private Authentication authentication(String userType, Long id) {
+        AuthenticatedPrincipal principal = new AuthenticatedPrincipal(
+                userType.toLowerCase() + id, "", true,
+                List.of(new SimpleGrantedAuthority("ROLE_" + userType)), userType, id, 1L);
+        return new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
+    }
+}
@@ -0,0 +1,133 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.cache.ProductCache;
+import com.java_avanade.spring_app.repositories.ProductRepository;
+import com.java_avanade.spring_app.repositories.StockRepository;
+import com.java_avanade.spring_app.search.ProductFacetIndex;
+import com.java_avanade.spring_app.search.ProductSuggester;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A reconstrução de um contador enxerga os deltas já retirados da fila cuja transação não terminou
+ * e não espera o flush, que pode estar aguardando uma conexão do pool.
+ */
+class StockReservationEngineTest {
+
+    private static final Long PRODUCT = 1L;
+
+    // Quantidade confirmada no banco, visível para outras transações
+    private final AtomicInteger committedQuantity = new AtomicInteger(10);
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private StockReservationEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        StockRepository stockRepository = mock(StockRepository.class);
+        when(stockRepository.getTotalQuantityByProductId(PRODUCT)).thenAnswer(invocation -> committedQuantity.get());
+        when(stockRepository.incrementByProductId(eq(PRODUCT), anyInt())).thenReturn(1);
+
+        ProductRepository productRepository = mock(ProductRepository.class);
+        when(productRepository.adjustAvailableStock(anyLong(), anyInt())).thenReturn(1);
+
+        engine = new StockReservationEngine(transactionManager, 4);
+        ReflectionTestUtils.setField(engine, "stockRepository", stockRepository);
+        ReflectionTestUtils.setField(engine, "productRepository", productRepository);
+        ReflectionTestUtils.setField(engine, "productCache", mock(ProductCache.class));
+        ReflectionTestUtils.setField(engine, "productFacetIndex", mock(ProductFacetIndex.class));
+        ReflectionTestUtils.setField(engine, "productSuggester", mock(ProductSuggester.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void rebuildDuringAbsoluteWriteCountsTheDrainedReservation() {
+        assertTrue(engine.reserve(PRODUCT, 4));
+
+        TransactionSynchronizationManager.initSynchronization();
+        engine.flushInCurrentTransaction(PRODUCT);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        // Outra escrita descartou o contador; o UPDATE acima ainda não foi confirmado
+        engine.invalidate(PRODUCT);
+        assertEquals(6, engine.available(PRODUCT));
+
+        synchronizations.forEach(synchronization -> synchronization.beforeCommit(false));
+        committedQuantity.addAndGet(-4);
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+        engine.invalidate(PRODUCT);
+        assertEquals(6, engine.available(PRODUCT));
+    }
+
+    @Test
+    void rolledBackAbsoluteWriteReturnsTheDeltaToTheQueue() {
+        assertTrue(engine.reserve(PRODUCT, 4));
+
+        TransactionSynchronizationManager.initSynchronization();
+        engine.flushInCurrentTransaction(PRODUCT);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        engine.invalidate(PRODUCT);
+        assertEquals(6, engine.available(PRODUCT));
+    }
+
+    @Test
+    void rebuildDoesNotWaitForAFlushWaitingOnAConnection() throws InterruptedException {
+        assertTrue(engine.reserve(PRODUCT, 4));
+
+        CountDownLatch flushWaiting = new CountDownLatch(1);
+        CountDownLatch connectionAvailable = new CountDownLatch(1);
+        when(transactionManager.getTransaction(any())).thenAnswer(invocation -> {
+            flushWaiting.countDown();
+            connectionAvailable.await();
+            return new SimpleTransactionStatus();
+        });
+
+        Thread flusher = new Thread(engine::flush);
+        flusher.start();
+        try {
+            assertTrue(flushWaiting.await(5, TimeUnit.SECONDS));
+
+            engine.invalidate(PRODUCT);
+            assertTimeoutPreemptively(Duration.ofSeconds(5),
+                    () -> assertEquals(6, engine.available(PRODUCT)));
+        } finally {
+            connectionAvailable.countDown();
+            flusher.join();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.java_avanade.spring_app.services;
+
+import com.java_avanade.spring_app.exceptions.ResourceAlreadyExistsException;
+import com.java_avanade.spring_app.repositories.UserIdentityRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Alterar username ou email para um valor já usado por outro tipo de usuário resulta em conflito (409),
+ * não em violação de restrição no commit.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@Import(UserIdentityService.class)
+class UserIdentityServiceTest {
+
+    @Autowired
+    private UserIdentityService userIdentityService;
+
+    @Autowired
+    private UserIdentityRepository userIdentityRepository;
+
+    @BeforeEach
+    void setUp() {
+        userIdentityService.register("CLIENT", 1L, "cliente", "cliente@teste.com");
+        userIdentityService.register("AFFILIATE", 1L, "afiliado", "afiliado@teste.com");
+    }
+
+    @Test
+    void updateToAnEmailInUseIsAConflict() {
+        assertThrows(ResourceAlreadyExistsException.class,
+                () -> userIdentityService.update("CLIENT", 1L, "cliente", "afiliado@teste.com"));
+    }
+
+    @Test
+    void updateToAUsernameInUseIsAConflict() {
+        assertThrows(ResourceAlreadyExistsException.class,
+                () -> userIdentityService.update("CLIENT", 1L, "afiliado", "cliente@teste.com"));
+    }
+
+    @Test
+    void updateKeepingItsOwnEmailSucceeds() {
+        userIdentityService.update("CLIENT", 1L, "cliente.novo", "cliente@teste.com");
+
+        assertEquals("cliente@teste.com",
+                userIdentityRepository.findByUsername("cliente.novo").orElseThrow().getEmail());
+    }
+}